@@ -12,6 +12,8 @@ android {
         targetSdk = 34
         versionCode = 1
         versionName = "1.0"
+
+        testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
     }
 
     buildTypes {
@@ -28,6 +30,21 @@ android {
         sourceCompatibility = JavaVersion.VERSION_1_8
         targetCompatibility = JavaVersion.VERSION_1_8
     }
+
+    testOptions {
+        unitTests {
+            // Robolectric necesita los recursos para inflar item_photo
+            isIncludeAndroidResources = true
+            all {
+                // Techo fijo para que los límites de memoria de las pruebas de escala sean estables
+                it.maxHeapSize = "2g"
+                it.systemProperty("java.awt.headless", "true")
+                // La biblioteca de 100k fotos solo con -PfullScaleTests=true
+                it.systemProperty("fullScaleTests",
+                    (project.findProperty("fullScaleTests") ?: "false").toString())
+            }
+        }
+    }
 }
 
 dependencies {
@@ -38,4 +55,11 @@ dependencies {
     implementation("androidx.cardview:cardview:1.0.0")
     implementation("androidx.exifinterface:exifinterface:1.3.7")
     implementation("com.google.android.gms:play-services-location:21.1.0")
+
+    testImplementation("junit:junit:4.13.2")
+    testImplementation("org.robolectric:robolectric:4.11.1")
+    testImplementation("androidx.test:core:1.5.0")
+
+    androidTestImplementation("androidx.test.ext:junit:1.1.5")
+    androidTestImplementation("androidx.test:rules:1.5.0")
 }
@@ -0,0 +1,118 @@
+package com.example.camarageolocalizacion;
+
+import android.Manifest;
+import android.content.Context;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.rule.GrantPermissionRule;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tiempo de arranque hasta la primera cuadrícula con fotos, sin snapshot
+ * del catálogo (como antes: las fotos esperan a la consulta de MediaStore)
+ * y con él.
+ *
+ * Necesita un dispositivo o emulador con fotos:
+ * ./gradlew connectedDebugAndroidTest. Cada arranque es en el mismo proceso,
+ * así que no incluye la creación del proceso; el log "Primer frame" de
+ * MainActivity da el tiempo exacto de cada frame en logcat.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StartupTimeTest {
+
+    private static final String TAG = "StartupTimeTest";
+    // Mismo nombre que MainActivity.SNAPSHOT_FILE
+    private static final String SNAPSHOT_FILE = "photo_catalog.bin";
+    private static final long TIMEOUT_MS = 30_000;
+    private static final int RUNS = 3;
+
+    @Rule
+    public GrantPermissionRule permissions = GrantPermissionRule.grant(requiredPermissions());
+
+    @Test
+    public void primeraCuadricula_sinSnapshotYConSnapshot() throws InterruptedException {
+        Context context = ApplicationProvider.getApplicationContext();
+        File snapshot = new File(context.getFilesDir(), SNAPSHOT_FILE);
+
+        // El primer arranque carga clases y deja el snapshot al cerrar
+        Assume.assumeTrue("El dispositivo no tiene fotos", timeToPhotos() >= 0);
+
+        // Mejor de varias pasadas, alternando para repartir el ruido
+        long beforeMs = Long.MAX_VALUE;
+        long afterMs = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            assertTrue(!snapshot.exists() || snapshot.delete());
+            beforeMs = Math.min(beforeMs, timeToPhotos());
+            assertTrue("No se guardó el snapshot", waitForFile(snapshot));
+            afterMs = Math.min(afterMs, timeToPhotos());
+        }
+
+        Log.i(TAG, String.format(Locale.US,
+                "Primera cuadrícula con fotos: %d ms sin snapshot, %d ms con snapshot",
+                beforeMs, afterMs));
+        assertTrue(String.format(Locale.US, "Con snapshot (%d ms) más lento que sin él (%d ms)",
+                afterMs, beforeMs), afterMs <= beforeMs);
+    }
+
+    /**
+     * Milisegundos desde el lanzamiento hasta que la cuadrícula tiene alguna
+     * tarjeta, o -1 si no aparece ninguna
+     */
+    private static long timeToPhotos() throws InterruptedException {
+        long start = SystemClock.elapsedRealtime();
+        try (ActivityScenario<MainActivity> scenario = ActivityScenario.launch(MainActivity.class)) {
+            AtomicInteger children = new AtomicInteger();
+            while (SystemClock.elapsedRealtime() - start < TIMEOUT_MS) {
+                scenario.onActivity(activity -> children.set(
+                        ((RecyclerView) activity.findViewById(R.id.recyclerViewPhotos)).getChildCount()));
+                if (children.get() > 0) {
+                    return SystemClock.elapsedRealtime() - start;
+                }
+                Thread.sleep(5);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * MainActivity guarda el snapshot en segundo plano y onDestroy no espera
+     * a la escritura; el archivo aparece entero porque se renombra al final
+     */
+    private static boolean waitForFile(File file) throws InterruptedException {
+        long start = SystemClock.elapsedRealtime();
+        while (!file.exists()) {
+            if (SystemClock.elapsedRealtime() - start > TIMEOUT_MS) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
+    private static String[] requiredPermissions() {
+        String storage = Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                ? Manifest.permission.READ_MEDIA_IMAGES
+                : Manifest.permission.READ_EXTERNAL_STORAGE;
+        return new String[]{
+                Manifest.permission.CAMERA,
+                Manifest.permission.ACCESS_FINE_LOCATION,
+                storage
+        };
+    }
+}
@@ -43,6 +43,10 @@ public class CameraActivity extends AppCompatActivity {
 
     private static final int REQUEST_IMAGE_CAPTURE = 1;
 
+    // Ubicación de la foto guardada, devuelta en el resultado
+    public static final String EXTRA_LATITUDE = "extra_latitude";
+    public static final String EXTRA_LONGITUDE = "extra_longitude";
+
     private Button btnCapture;
     private TextView tvGpsStatus;
     private FusedLocationProviderClient fusedLocationClient;
@@ -284,7 +288,12 @@ public class CameraActivity extends AppCompatActivity {
 
             Toast.makeText(this, "✓ Foto guardada en galería", Toast.LENGTH_LONG).show();
 
-            setResult(RESULT_OK);
+            Intent result = new Intent();
+            if (currentLocation != null) {
+                result.putExtra(EXTRA_LATITUDE, currentLocation.getLatitude());
+                result.putExtra(EXTRA_LONGITUDE, currentLocation.getLongitude());
+            }
+            setResult(RESULT_OK, result);
             finish();
 
         } catch (Exception e) {
@@ -0,0 +1,232 @@
+package com.example.camarageolocalizacion;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Índice de densidad de fotos para el mapa de calor.
+ *
+ * Cada punto se proyecta a Web Mercator y se guarda como código Morton
+ * (quadkey) de {@link #LEVEL_BITS} bits por eje en un array ordenado. Así,
+ * cualquier tile de cualquier zoom corresponde a un rango contiguo del array
+ * y su rejilla de densidad se obtiene con una búsqueda binaria y un recorrido
+ * de los puntos del tile, sin guardar una rejilla por nivel en memoria.
+ *
+ * Todos los métodos son thread-safe.
+ */
+public class DensityGrid {
+
+    /** Celdas por lado en cada tile */
+    public static final int BINS = 64;
+    private static final int BIN_BITS = 6;
+
+    /** Zoom máximo: el nivel de las celdas no puede superar LEVEL_BITS */
+    public static final int MAX_ZOOM = 18;
+    private static final int LEVEL_BITS = MAX_ZOOM + BIN_BITS;
+
+    private static final double MAX_LATITUDE = 85.05112878;
+
+    private long[] codes = new long[0];
+    private int size;
+
+    /**
+     * Sustituye todos los puntos y devuelve los tiles afectados por la
+     * diferencia con el conjunto anterior, o null si cambió todo
+     */
+    public synchronized Set<Long> setPoints(long[] newCodes, int maxChanges) {
+        long[] sorted = Arrays.copyOf(newCodes, newCodes.length);
+        Arrays.sort(sorted);
+
+        // Recorrido simultáneo de ambos arrays ordenados
+        Set<Long> changed = new HashSet<>();
+        int changes = 0;
+        int i = 0;
+        int j = 0;
+        while ((i < size || j < sorted.length) && changes <= maxChanges) {
+            if (j >= sorted.length || (i < size && codes[i] < sorted[j])) {
+                addAffectedTiles(codes[i++], changed);
+                changes++;
+            } else if (i >= size || sorted[j] < codes[i]) {
+                addAffectedTiles(sorted[j++], changed);
+                changes++;
+            } else {
+                i++;
+                j++;
+            }
+        }
+
+        codes = sorted;
+        size = sorted.length;
+        return changes > maxChanges ? null : changed;
+    }
+
+    /**
+     * Añade un punto y devuelve las claves de los tiles que cambian
+     */
+    public synchronized Set<Long> add(double latitude, double longitude) {
+        long code = encode(latitude, longitude);
+
+        int index = Arrays.binarySearch(codes, 0, size, code);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        if (size == codes.length) {
+            codes = Arrays.copyOf(codes, Math.max(16, size * 2));
+        }
+        System.arraycopy(codes, index, codes, index + 1, size - index);
+        codes[index] = code;
+        size++;
+
+        Set<Long> changed = new HashSet<>();
+        addAffectedTiles(code, changed);
+        return changed;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Copia de los códigos ordenados, para persistirlos
+     */
+    public synchronized long[] getCodes() {
+        return Arrays.copyOf(codes, size);
+    }
+
+    /**
+     * Cuenta los puntos de cada celda del tile en out (BINS * BINS, por filas).
+     * Devuelve el total de puntos del tile.
+     */
+    public synchronized int countTile(int zoom, int tileX, int tileY, int[] out) {
+        Arrays.fill(out, 0);
+
+        int shift = 2 * (LEVEL_BITS - zoom);
+        long prefix = interleave(tileX, tileY);
+        long from = prefix << shift;
+        long to = (prefix + 1) << shift;
+
+        int start = lowerBound(from);
+        int end = lowerBound(to);
+
+        int binShift = LEVEL_BITS - zoom - BIN_BITS;
+        for (int k = start; k < end; k++) {
+            long code = codes[k];
+            int binX = (deinterleave(code) >>> binShift) & (BINS - 1);
+            int binY = (deinterleave(code >>> 1) >>> binShift) & (BINS - 1);
+            out[binY * BINS + binX]++;
+        }
+        return end - start;
+    }
+
+    /**
+     * Extremos de los puntos en coordenadas de mundo normalizadas [0, 1):
+     * {minX, minY, maxX, maxY}, o null si no hay puntos
+     */
+    public synchronized double[] getBounds() {
+        if (size == 0) {
+            return null;
+        }
+        double scale = 1.0 / (1L << LEVEL_BITS);
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int k = 0; k < size; k++) {
+            int x = deinterleave(codes[k]);
+            int y = deinterleave(codes[k] >>> 1);
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+        }
+        return new double[]{minX * scale, minY * scale, (maxX + 1) * scale, (maxY + 1) * scale};
+    }
+
+    /**
+     * Código Morton de unas coordenadas
+     */
+    public static long encode(double latitude, double longitude) {
+        double lat = Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude));
+        double sin = Math.sin(Math.toRadians(lat));
+        double worldX = (longitude + 180.0) / 360.0;
+        double worldY = 0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI);
+
+        long max = (1L << LEVEL_BITS) - 1;
+        int x = (int) Math.max(0, Math.min(max, (long) (worldX * (1L << LEVEL_BITS))));
+        int y = (int) Math.max(0, Math.min(max, (long) (worldY * (1L << LEVEL_BITS))));
+        return interleave(x, y);
+    }
+
+    /**
+     * Clave única de un tile: zoom en los bits altos, luego x e y
+     */
+    public static long tileKey(int zoom, int tileX, int tileY) {
+        return ((long) zoom << 56) | ((long) tileX << 28) | tileY;
+    }
+
+    public static int tileKeyZoom(long key) {
+        return (int) (key >>> 56);
+    }
+
+    public static int tileKeyX(long key) {
+        return (int) ((key >>> 28) & 0xFFFFFFF);
+    }
+
+    public static int tileKeyY(long key) {
+        return (int) (key & 0xFFFFFFF);
+    }
+
+    private static void addAffectedTiles(long code, Set<Long> out) {
+        int x = deinterleave(code);
+        int y = deinterleave(code >>> 1);
+        for (int zoom = 0; zoom <= MAX_ZOOM; zoom++) {
+            int shift = LEVEL_BITS - zoom;
+            out.add(tileKey(zoom, x >>> shift, y >>> shift));
+        }
+    }
+
+    private int lowerBound(long value) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (codes[mid] < value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Intercala los bits: x en las posiciones pares, y en las impares
+     */
+    private static long interleave(int x, int y) {
+        return spread(x) | (spread(y) << 1);
+    }
+
+    private static long spread(int value) {
+        long v = value & 0xFFFFFFFFL;
+        v = (v | (v << 16)) & 0x0000FFFF0000FFFFL;
+        v = (v | (v << 8)) & 0x00FF00FF00FF00FFL;
+        v = (v | (v << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        v = (v | (v << 2)) & 0x3333333333333333L;
+        v = (v | (v << 1)) & 0x5555555555555555L;
+        return v;
+    }
+
+    /**
+     * Extrae los bits pares del código
+     */
+    private static int deinterleave(long code) {
+        long v = code & 0x5555555555555555L;
+        v = (v | (v >>> 1)) & 0x3333333333333333L;
+        v = (v | (v >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+        v = (v | (v >>> 4)) & 0x00FF00FF00FF00FFL;
+        v = (v | (v >>> 8)) & 0x0000FFFF0000FFFFL;
+        v = (v | (v >>> 16)) & 0x00000000FFFFFFFFL;
+        return (int) v;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.camarageolocalizacion;
+
+import android.os.Bundle;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Mapa de calor sin conexión de dónde se tomaron las fotos
+ */
+public class HeatmapActivity extends AppCompatActivity {
+
+    private final ExecutorService boundsExecutor = Executors.newSingleThreadExecutor();
+
+    private HeatmapView heatmapView;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_heatmap);
+
+        heatmapView = findViewById(R.id.heatmapView);
+        TextView tvInfo = findViewById(R.id.tvHeatmapInfo);
+
+        HeatmapTileCache tileCache = HeatmapTileCache.getInstance(this);
+        heatmapView.setTileCache(tileCache);
+
+        // Encuadrar las fotos en cuanto la vista tenga tamaño
+        boundsExecutor.execute(() -> {
+            final double[] bounds = tileCache.getBounds();
+            final int count = tileCache.getPointCount();
+            heatmapView.post(() -> {
+                tvInfo.setText("🔥 " + count + " fotos geolocalizadas");
+                heatmapView.fitBounds(bounds);
+            });
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        boundsExecutor.shutdownNow();
+        heatmapView.setTileCache(null);
+    }
+}
@@ -0,0 +1,413 @@
+package com.example.camarageolocalizacion;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Tiles del mapa de calor, con caché LRU en memoria y en disco.
+ *
+ * Es única por proceso para que las fotos nuevas de CameraActivity invaliden
+ * solo los tiles que contienen su punto, en memoria y en disco, aunque el
+ * mapa no esté abierto. Los tiles se rasterizan en hilos de fondo a partir de
+ * {@link DensityGrid}; getTile y el listener se usan desde el hilo principal.
+ */
+public class HeatmapTileCache {
+
+    private static final String TAG = "HeatmapTileCache";
+
+    public static final int TILE_SIZE = 256;
+    private static final int BIN_PIXELS = TILE_SIZE / DensityGrid.BINS;
+    private static final int RENDER_THREADS = 2;
+    private static final int MEMORY_CACHE_KB = 24 * 1024;
+    private static final long DISK_CACHE_BYTES = 32L * 1024 * 1024;
+    // Con más cambios que estos es más barato vaciar la caché entera
+    private static final int MAX_INCREMENTAL_CHANGES = 2000;
+    private static final int SATURATION = 64;
+    private static final String POINTS_FILE = "points.bin";
+
+    public interface Listener {
+        void onTileReady();
+    }
+
+    private static HeatmapTileCache instance;
+
+    private final File cacheDir;
+    private final DensityGrid grid = new DensityGrid();
+    private final LruCache<Long, Bitmap> memoryCache;
+    private final Set<Long> rendering = new HashSet<>();
+    private final ExecutorService renderExecutor = Executors.newFixedThreadPool(RENDER_THREADS);
+    // Un solo hilo para cambios de puntos y escrituras de points.bin
+    private final ExecutorService updateExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Bitmap emptyTile = Bitmap.createBitmap(1, 1, Bitmap.Config.ARGB_8888);
+
+    // Protege la generación, los renombrados y los borrados de tiles. La
+    // decodificación y la compresión PNG se hacen fuera del lock.
+    private final Object diskLock = new Object();
+    private volatile long generation;
+    private long diskBytes;
+
+    private Listener listener;
+
+    public static synchronized HeatmapTileCache getInstance(Context context) {
+        if (instance == null) {
+            File cacheDir = new File(context.getApplicationContext().getCacheDir(), "heatmap");
+            instance = new HeatmapTileCache(cacheDir);
+        }
+        return instance;
+    }
+
+    private HeatmapTileCache(File cacheDir) {
+        this.cacheDir = cacheDir;
+        memoryCache = new LruCache<Long, Bitmap>(MEMORY_CACHE_KB) {
+            @Override
+            protected int sizeOf(@NonNull Long key, @NonNull Bitmap bitmap) {
+                return Math.max(1, bitmap.getByteCount() / 1024);
+            }
+        };
+
+        // Recuperar los puntos con los que se generaron los tiles en disco
+        updateExecutor.execute(() -> {
+            cacheDir.mkdirs();
+            long[] codes = readPoints();
+            grid.setPoints(codes, Integer.MAX_VALUE);
+            synchronized (diskLock) {
+                // Descartar lo que se haya pintado antes de tener los puntos
+                generation++;
+                diskBytes = 0;
+                File[] files = cacheDir.listFiles();
+                if (files != null) {
+                    for (File file : files) {
+                        diskBytes += file.length();
+                    }
+                }
+            }
+            mainHandler.post(() -> {
+                memoryCache.evictAll();
+                if (listener != null) {
+                    listener.onTileReady();
+                }
+            });
+        });
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Devuelve el tile si está en memoria; si no, lo pide en segundo plano y
+     * avisa al listener cuando está listo. Solo desde el hilo principal.
+     */
+    public Bitmap getTile(int zoom, int tileX, int tileY) {
+        final long key = DensityGrid.tileKey(zoom, tileX, tileY);
+        Bitmap bitmap = memoryCache.get(key);
+        if (bitmap != null) {
+            return bitmap == emptyTile ? null : bitmap;
+        }
+        if (rendering.add(key)) {
+            final long requestGeneration = generation;
+            renderExecutor.execute(() -> {
+                final Bitmap tile = loadOrRender(key, requestGeneration);
+                mainHandler.post(() -> {
+                    rendering.remove(key);
+                    if (requestGeneration != generation) {
+                        // Descartado por un cambio de puntos. El repintado que
+                        // pidió la invalidación encontró la clave aún en
+                        // rendering, así que hay que avisar para que se vuelva
+                        // a pedir con los puntos nuevos.
+                        if (listener != null) {
+                            listener.onTileReady();
+                        }
+                        return;
+                    }
+                    if (tile != null) {
+                        memoryCache.put(key, tile);
+                        if (listener != null) {
+                            listener.onTileReady();
+                        }
+                    }
+                });
+            });
+        }
+        return null;
+    }
+
+    /**
+     * Sustituye el conjunto de fotos geolocalizadas. Solo se invalidan los
+     * tiles que cubren puntos añadidos o eliminados.
+     */
+    public void setPoints(final double[] latitudes, final double[] longitudes) {
+        updateExecutor.execute(() -> {
+            long[] codes = new long[latitudes.length];
+            for (int i = 0; i < codes.length; i++) {
+                codes[i] = DensityGrid.encode(latitudes[i], longitudes[i]);
+            }
+            Set<Long> changed = grid.setPoints(codes, MAX_INCREMENTAL_CHANGES);
+            if (changed == null) {
+                invalidateAll();
+            } else if (!changed.isEmpty()) {
+                invalidate(changed);
+            } else {
+                return;
+            }
+            writePoints();
+        });
+    }
+
+    /**
+     * Añade la foto recién capturada e invalida los tiles que la contienen
+     */
+    public void addPoint(final double latitude, final double longitude) {
+        updateExecutor.execute(() -> {
+            invalidate(grid.add(latitude, longitude));
+            writePoints();
+        });
+    }
+
+    public int getPointCount() {
+        return grid.size();
+    }
+
+    /**
+     * Extremos de los puntos en coordenadas de mundo normalizadas. No llamar
+     * desde el hilo principal.
+     */
+    public double[] getBounds() {
+        return grid.getBounds();
+    }
+
+    private void invalidate(final Set<Long> keys) {
+        synchronized (diskLock) {
+            generation++;
+            for (long key : keys) {
+                File file = tileFile(key);
+                long length = file.length();
+                if (file.delete()) {
+                    diskBytes -= length;
+                }
+            }
+        }
+        Log.d(TAG, "Tiles invalidados: " + keys.size());
+        mainHandler.post(() -> {
+            for (Long key : keys) {
+                memoryCache.remove(key);
+            }
+            if (listener != null) {
+                listener.onTileReady();
+            }
+        });
+    }
+
+    private void invalidateAll() {
+        synchronized (diskLock) {
+            generation++;
+            File[] files = cacheDir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    if (!file.getName().equals(POINTS_FILE)) {
+                        file.delete();
+                    }
+                }
+            }
+            diskBytes = 0;
+        }
+        mainHandler.post(() -> {
+            memoryCache.evictAll();
+            if (listener != null) {
+                listener.onTileReady();
+            }
+        });
+    }
+
+    private Bitmap loadOrRender(long key, long requestGeneration) {
+        if (requestGeneration != generation) {
+            return null;
+        }
+        // Los tiles se escriben con un renombrado atómico: el archivo está
+        // completo o no existe
+        File file = tileFile(key);
+        if (file.isFile()) {
+            Bitmap cached = BitmapFactory.decodeFile(file.getPath());
+            if (cached != null) {
+                if (requestGeneration != generation) {
+                    // Invalidado mientras se leía
+                    return null;
+                }
+                // Marca de uso para la LRU de disco
+                file.setLastModified(System.currentTimeMillis());
+                return cached;
+            }
+        }
+
+        int[] bins = new int[DensityGrid.BINS * DensityGrid.BINS];
+        int total = grid.countTile(DensityGrid.tileKeyZoom(key),
+                DensityGrid.tileKeyX(key), DensityGrid.tileKeyY(key), bins);
+        if (total == 0) {
+            return emptyTile;
+        }
+
+        Bitmap tile = rasterize(bins);
+        writeTile(file, tile, requestGeneration);
+        return tile;
+    }
+
+    private static Bitmap rasterize(int[] bins) {
+        int[] pixels = new int[TILE_SIZE * TILE_SIZE];
+        double logSaturation = Math.log1p(SATURATION);
+
+        for (int binY = 0; binY < DensityGrid.BINS; binY++) {
+            for (int binX = 0; binX < DensityGrid.BINS; binX++) {
+                int count = bins[binY * DensityGrid.BINS + binX];
+                if (count == 0) {
+                    continue;
+                }
+                float t = (float) Math.min(1.0, Math.log1p(count) / logSaturation);
+                int color = heatColor(t);
+
+                int x0 = binX * BIN_PIXELS;
+                int y0 = binY * BIN_PIXELS;
+                for (int y = y0; y < y0 + BIN_PIXELS; y++) {
+                    Arrays.fill(pixels, y * TILE_SIZE + x0, y * TILE_SIZE + x0 + BIN_PIXELS, color);
+                }
+            }
+        }
+
+        return Bitmap.createBitmap(pixels, TILE_SIZE, TILE_SIZE, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * Degradado azul -> verde -> amarillo -> rojo, más opaco cuanto más denso
+     */
+    private static int heatColor(float t) {
+        int alpha = (int) (110 + 145 * t);
+        if (t < 0.33f) {
+            float k = t / 0.33f;
+            return Color.argb(alpha, 0, (int) (255 * k), (int) (255 * (1 - k)));
+        } else if (t < 0.66f) {
+            float k = (t - 0.33f) / 0.33f;
+            return Color.argb(alpha, (int) (255 * k), 255, 0);
+        }
+        float k = Math.min(1f, (t - 0.66f) / 0.34f);
+        return Color.argb(alpha, 255, (int) (255 * (1 - k)), 0);
+    }
+
+    private void writeTile(File file, Bitmap tile, long requestGeneration) {
+        if (requestGeneration != generation) {
+            return;
+        }
+        // Comprimir fuera del lock, en un temporal propio de este hilo
+        File tmp = new File(file.getPath() + "." + Thread.currentThread().getId() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            tile.compress(Bitmap.CompressFormat.PNG, 100, out);
+        } catch (IOException e) {
+            tmp.delete();
+            return;
+        }
+
+        synchronized (diskLock) {
+            long previous = file.length();
+            if (requestGeneration != generation || !tmp.renameTo(file)) {
+                tmp.delete();
+                return;
+            }
+            diskBytes += file.length() - previous;
+            if (diskBytes > DISK_CACHE_BYTES) {
+                trimDisk();
+            }
+        }
+    }
+
+    /**
+     * Borra los tiles menos usados hasta quedar en el 75% del límite
+     */
+    private void trimDisk() {
+        File[] files = cacheDir.listFiles((dir, name) -> name.endsWith(".png"));
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        for (File file : files) {
+            if (diskBytes <= DISK_CACHE_BYTES * 3 / 4) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                diskBytes -= length;
+            }
+        }
+    }
+
+    private File tileFile(long key) {
+        return new File(cacheDir, DensityGrid.tileKeyZoom(key) + "_" + DensityGrid.tileKeyX(key)
+                + "_" + DensityGrid.tileKeyY(key) + ".png");
+    }
+
+    private long[] readPoints() {
+        File file = new File(cacheDir, POINTS_FILE);
+        if (!file.isFile()) {
+            return new long[0];
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            int count = in.readInt();
+            if (count < 0 || count > file.length() / 8) {
+                return new long[0];
+            }
+            long[] codes = new long[count];
+            for (int i = 0; i < codes.length; i++) {
+                codes[i] = in.readLong();
+            }
+            return codes;
+        } catch (IOException | RuntimeException e) {
+            return new long[0];
+        }
+    }
+
+    private void writePoints() {
+        long[] codes = grid.getCodes();
+        File file = new File(cacheDir, POINTS_FILE);
+        File tmp = new File(cacheDir, POINTS_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(codes.length);
+            for (long code : codes) {
+                out.writeLong(code);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "No se pudieron guardar los puntos del mapa de calor", e);
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.camarageolocalizacion;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Vista del mapa de calor con desplazamiento y zoom.
+ *
+ * Solo dibuja tiles que ya están en memoria; los que faltan se piden a
+ * {@link HeatmapTileCache}, que los rasteriza en segundo plano, de modo que
+ * onDraw no depende del número de fotos.
+ */
+public class HeatmapView extends View implements HeatmapTileCache.Listener {
+
+    private static final double MIN_ZOOM = 0;
+    private static final double MAX_ZOOM = DensityGrid.MAX_ZOOM + 0.99;
+
+    private final Paint tilePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Paint worldPaint = new Paint();
+    private final Rect srcRect = new Rect(0, 0, HeatmapTileCache.TILE_SIZE, HeatmapTileCache.TILE_SIZE);
+    private final RectF dstRect = new RectF();
+
+    private final ScaleGestureDetector scaleDetector;
+    private final GestureDetector gestureDetector;
+    private final float density;
+
+    private HeatmapTileCache tileCache;
+
+    // Centro de la vista en coordenadas de mundo normalizadas [0, 1)
+    private double centerX = 0.5;
+    private double centerY = 0.5;
+    private double zoom = 1;
+
+    public HeatmapView(Context context) {
+        this(context, null);
+    }
+
+    public HeatmapView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        density = context.getResources().getDisplayMetrics().density;
+        worldPaint.setColor(Color.parseColor("#37474F"));
+        scaleDetector = new ScaleGestureDetector(context, new ScaleListener());
+        gestureDetector = new GestureDetector(context, new PanListener());
+    }
+
+    public void setTileCache(HeatmapTileCache tileCache) {
+        if (this.tileCache != null) {
+            this.tileCache.setListener(null);
+        }
+        this.tileCache = tileCache;
+        if (tileCache != null) {
+            tileCache.setListener(this);
+        }
+        invalidate();
+    }
+
+    /**
+     * Encuadra los extremos indicados (ver {@link HeatmapTileCache#getBounds()})
+     */
+    public void fitBounds(double[] bounds) {
+        if (bounds == null || getWidth() == 0) {
+            return;
+        }
+        centerX = (bounds[0] + bounds[2]) / 2;
+        centerY = (bounds[1] + bounds[3]) / 2;
+
+        double width = Math.max(bounds[2] - bounds[0], 1e-7);
+        double height = Math.max(bounds[3] - bounds[1], 1e-7);
+        double base = HeatmapTileCache.TILE_SIZE * density;
+        double fit = Math.min(getWidth() / (width * base), getHeight() / (height * base));
+        zoom = clampZoom(Math.log(fit * 0.8) / Math.log(2));
+        invalidate();
+    }
+
+    @Override
+    public void onTileReady() {
+        postInvalidateOnAnimation();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (tileCache == null) {
+            return;
+        }
+
+        int level = (int) Math.floor(zoom);
+        int tileCount = 1 << level;
+        double tilePx = HeatmapTileCache.TILE_SIZE * density * Math.pow(2, zoom - level);
+        double worldPx = tilePx * tileCount;
+        double worldLeft = getWidth() / 2.0 - centerX * worldPx;
+        double worldTop = getHeight() / 2.0 - centerY * worldPx;
+
+        canvas.drawRect((float) worldLeft, (float) worldTop,
+                (float) (worldLeft + worldPx), (float) (worldTop + worldPx), worldPaint);
+
+        int firstX = Math.max(0, (int) Math.floor(-worldLeft / tilePx));
+        int firstY = Math.max(0, (int) Math.floor(-worldTop / tilePx));
+        int lastX = Math.min(tileCount - 1, (int) Math.floor((getWidth() - worldLeft) / tilePx));
+        int lastY = Math.min(tileCount - 1, (int) Math.floor((getHeight() - worldTop) / tilePx));
+
+        for (int y = firstY; y <= lastY; y++) {
+            for (int x = firstX; x <= lastX; x++) {
+                Bitmap tile = tileCache.getTile(level, x, y);
+                if (tile == null) {
+                    continue;
+                }
+                float left = (float) (worldLeft + x * tilePx);
+                float top = (float) (worldTop + y * tilePx);
+                dstRect.set(left, top, (float) (left + tilePx), (float) (top + tilePx));
+                canvas.drawBitmap(tile, srcRect, dstRect, tilePaint);
+            }
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        boolean handled = scaleDetector.onTouchEvent(event);
+        handled = gestureDetector.onTouchEvent(event) || handled;
+        return handled || super.onTouchEvent(event);
+    }
+
+    private double worldPx() {
+        return HeatmapTileCache.TILE_SIZE * density * Math.pow(2, zoom);
+    }
+
+    /**
+     * Cambia el zoom manteniendo fijo el punto del mundo bajo el foco
+     */
+    private void zoomAround(double newZoom, float focusX, float focusY) {
+        double before = worldPx();
+        double focusWorldX = centerX + (focusX - getWidth() / 2.0) / before;
+        double focusWorldY = centerY + (focusY - getHeight() / 2.0) / before;
+
+        zoom = clampZoom(newZoom);
+        double after = worldPx();
+        centerX = clamp01(focusWorldX - (focusX - getWidth() / 2.0) / after);
+        centerY = clamp01(focusWorldY - (focusY - getHeight() / 2.0) / after);
+        invalidate();
+    }
+
+    private static double clampZoom(double value) {
+        return Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, value));
+    }
+
+    private static double clamp01(double value) {
+        return Math.max(0, Math.min(1, value));
+    }
+
+    private class ScaleListener extends ScaleGestureDetector.SimpleOnScaleGestureListener {
+        @Override
+        public boolean onScale(@NonNull ScaleGestureDetector detector) {
+            zoomAround(zoom + Math.log(detector.getScaleFactor()) / Math.log(2),
+                    detector.getFocusX(), detector.getFocusY());
+            return true;
+        }
+    }
+
+    private class PanListener extends GestureDetector.SimpleOnGestureListener {
+        @Override
+        public boolean onDown(@NonNull MotionEvent e) {
+            return true;
+        }
+
+        @Override
+        public boolean onScroll(@Nullable MotionEvent e1, @NonNull MotionEvent e2,
+                                float distanceX, float distanceY) {
+            double world = worldPx();
+            centerX = clamp01(centerX + distanceX / world);
+            centerY = clamp01(centerY + distanceY / world);
+            invalidate();
+            return true;
+        }
+
+        @Override
+        public boolean onDoubleTap(@NonNull MotionEvent e) {
+            zoomAround(Math.floor(zoom) + 1, e.getX(), e.getY());
+            return true;
+        }
+    }
+}
@@ -1,17 +1,28 @@
 package com.example.camarageolocalizacion;
 
 import android.Manifest;
+import android.content.ContentResolver;
 import android.content.Intent;
+import android.content.IntentSender;
 import android.content.pm.PackageManager;
-import android.database.Cursor;
-import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
-import android.provider.MediaStore;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.view.View;
+import android.view.ViewTreeObserver;
+import android.widget.ProgressBar;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.view.ActionMode;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 import androidx.recyclerview.widget.GridLayoutManager;
@@ -20,21 +31,81 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class MainActivity extends AppCompatActivity {
 
     private static final int PERMISSION_REQUEST_CODE = 100;
+    private static final int WRITE_PERMISSION_REQUEST_CODE = 101;
     private static final int CAMERA_ACTIVITY_REQUEST = 200;
+    private static final int DELETE_REQUEST = 300;
+    private static final int WRITE_REQUEST = 301;
+    private static final String TAG = "MainActivity";
+    private static final String SNAPSHOT_FILE = "photo_catalog.bin";
+    private static final String GAZETTEER_FILE = "gazetteer.txt";
+    private static final String GAZETTEER_INDEX_FILE = "gazetteer.idx";
+    private static final int METADATA_BATCH = 200;
+
+    // Criterios para separar viajes y simplificar sus rutas
+    private static final long TRIP_MAX_GAP_MILLIS = 3 * 60 * 60 * 1000L;
+    private static final double TRIP_MAX_GAP_METERS = 50_000;
+    private static final double TRIP_TOLERANCE_METERS = 25;
+    private static final Comparator<TripPoint> TRIP_ORDER =
+            (a, b) -> Long.compare(a.takenMillis, b.takenMillis);
 
     private RecyclerView recyclerViewPhotos;
     private PhotoAdapter photoAdapter;
     private List<Photo> photoList;
+    private final Map<Long, Photo> photosById = new HashMap<>();
     private FloatingActionButton btnTakePhoto;
 
+    // Un solo hilo: las consultas y escrituras del catálogo se serializan
+    private final ExecutorService catalogExecutor = Executors.newSingleThreadExecutor();
+    // El índice del gazetteer puede tardar segundos en construirse; va aparte
+    // para no retrasar la consulta a MediaStore
+    private final ExecutorService geocoderExecutor = Executors.newSingleThreadExecutor();
+    // Lectura de EXIF de las fotos que aún no se han mostrado
+    private final ExecutorService metadataExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private long createStartMs;
+    private boolean metadataIndexing;
+    // Cambios del catálogo todavía sin guardar en el snapshot
+    private boolean catalogDirty;
+    private int savedMetadataRevision;
+    private TripEngine tripEngine;
+    // Fotos ya pasadas por tripEngine y fecha de la más reciente
+    private Set<Long> tripPhotoIds = new HashSet<>();
+    private long tripLastMillis = Long.MIN_VALUE;
+    private boolean tripRebuilding;
+    private boolean tripPending;
+
+    // Selección múltiple y acciones por lotes
+    private ActionMode selectionMode;
+    private List<Photo> pendingStrip;
+    private PhotoBatchOperations.Task stripTask;
+    private Runnable pendingWriteAction;
+    private volatile boolean destroyed;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        createStartMs = SystemClock.elapsedRealtime();
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
@@ -49,6 +120,13 @@ public class MainActivity extends AppCompatActivity {
         // Configurar RecyclerView con Grid de 2 columnas
         recyclerViewPhotos.setLayoutManager(new GridLayoutManager(this, 2));
         recyclerViewPhotos.setAdapter(photoAdapter);
+        photoAdapter.setSelectionListener(this::onSelectionChanged);
+
+        // Pintar el último catálogo conocido mientras se consulta MediaStore
+        if (checkPermissions()) {
+            showSnapshot();
+        }
+        measureFirstFrame();
 
         // Configurar botón para abrir cámara
         btnTakePhoto.setOnClickListener(v -> {
@@ -59,12 +137,20 @@ public class MainActivity extends AppCompatActivity {
             }
         });
 
-        // Verificar permisos y cargar fotos
-        if (checkPermissions()) {
-            loadPhotos();
-        } else {
+        // Abrir el mapa de calor
+        findViewById(R.id.btnHeatmap).setOnClickListener(v ->
+                startActivity(new Intent(this, HeatmapActivity.class)));
+
+        // Mostrar los viajes reconstruidos
+        findViewById(R.id.btnTrips).setOnClickListener(v -> showTrips());
+
+        // Las fotos se cargan en onResume, que siempre sigue a onCreate
+        if (!checkPermissions()) {
             requestPermissions();
         }
+
+        // Nombres de lugar sin conexión
+        loadReverseGeocoder();
     }
 
     /**
@@ -140,7 +226,17 @@ public class MainActivity extends AppCompatActivity {
                                            @NonNull int[] grantResults) {
         super.onRequestPermissionsResult(requestCode, permissions, grantResults);
 
-        if (requestCode == PERMISSION_REQUEST_CODE) {
+        if (requestCode == WRITE_PERMISSION_REQUEST_CODE) {
+            Runnable action = pendingWriteAction;
+            pendingWriteAction = null;
+            if (grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED
+                    && action != null) {
+                action.run();
+            } else {
+                Toast.makeText(this, "⚠ Se necesita permiso de escritura para modificar fotos",
+                        Toast.LENGTH_LONG).show();
+            }
+        } else if (requestCode == PERMISSION_REQUEST_CODE) {
             boolean allGranted = true;
             for (int result : grantResults) {
                 if (result != PackageManager.PERMISSION_GRANTED) {
@@ -150,7 +246,7 @@ public class MainActivity extends AppCompatActivity {
             }
 
             if (allGranted) {
-                loadPhotos();
+                // onResume carga las fotos al cerrarse el diálogo de permisos
                 Toast.makeText(this, "✓ Permisos concedidos", Toast.LENGTH_SHORT).show();
             } else {
                 Toast.makeText(this, "⚠ Se necesitan todos los permisos para usar la aplicación",
@@ -160,60 +256,675 @@ public class MainActivity extends AppCompatActivity {
     }
 
     /**
-     * Carga todas las fotos del dispositivo usando MediaStore
+     * Muestra el catálogo guardado en el último arranque
+     */
+    private void showSnapshot() {
+        List<Photo> cached = PhotoCatalogSnapshot.read(new File(getFilesDir(), SNAPSHOT_FILE));
+        if (!cached.isEmpty()) {
+            photoList.addAll(cached);
+            indexById();
+            photoAdapter.updatePhotos(photoList);
+        }
+    }
+
+    private void indexById() {
+        photosById.clear();
+        for (Photo photo : photoList) {
+            photosById.put(photo.getId(), photo);
+        }
+    }
+
+    /**
+     * Registra en el log el tiempo hasta el primer frame
+     */
+    private void measureFirstFrame() {
+        final View content = findViewById(android.R.id.content);
+        content.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                content.getViewTreeObserver().removeOnPreDrawListener(this);
+                Log.i(TAG, "Primer frame en " + (SystemClock.elapsedRealtime() - createStartMs)
+                        + " ms con " + photoList.size() + " fotos del snapshot");
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Carga todas las fotos del dispositivo usando MediaStore en segundo plano
+     * y reconcilia el resultado con lo que ya se está mostrando
      */
     private void loadPhotos() {
+        catalogExecutor.execute(() -> {
+            long start = SystemClock.elapsedRealtime();
+            try {
+                List<Photo> scanned = MediaStorePhotoLoader.query(getContentResolver());
+                long elapsed = SystemClock.elapsedRealtime() - start;
+                mainHandler.post(() -> onPhotosLoaded(scanned, elapsed));
+            } catch (Exception e) {
+                mainHandler.post(() -> Toast.makeText(this,
+                        "❌ Error al cargar fotos: " + e.getMessage(),
+                        Toast.LENGTH_SHORT).show());
+            }
+        });
+    }
+
+    /**
+     * Sustituye la lista mostrada por el resultado de MediaStore, conservando
+     * los metadatos ya leídos, y actualiza el snapshot. Si MediaStore no ha
+     * cambiado se conserva la lista actual tal cual.
+     */
+    private void onPhotosLoaded(List<Photo> scanned, long elapsedMs) {
+        if (isFinishing() || isDestroyed()) {
+            return;
+        }
+
+        if (sameCatalog(scanned)) {
+            Log.i(TAG, "Catálogo sin cambios en MediaStore (" + elapsedMs + " ms, "
+                    + photoList.size() + " fotos)");
+            indexMetadata();
+            return;
+        }
+
+        MediaStorePhotoLoader.reconcile(scanned, photosById);
+
         photoList.clear();
+        photoList.addAll(scanned);
+        indexById();
+        photoAdapter.updatePhotos(photoList);
 
-        Uri collection;
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
-            collection = MediaStore.Images.Media.getContentUri(MediaStore.VOLUME_EXTERNAL);
-        } else {
-            collection = MediaStore.Images.Media.EXTERNAL_CONTENT_URI;
-        }
-
-        String[] projection = new String[]{
-                MediaStore.Images.Media._ID,
-                MediaStore.Images.Media.DISPLAY_NAME,
-                MediaStore.Images.Media.DATA,
-                MediaStore.Images.Media.SIZE
-        };
-
-        String sortOrder = MediaStore.Images.Media.DATE_ADDED + " DESC";
-
-        try (Cursor cursor = getContentResolver().query(
-                collection,
-                projection,
-                null,
-                null,
-                sortOrder
-        )) {
-            if (cursor != null) {
-                int dataColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.DATA);
-                int nameColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.DISPLAY_NAME);
-                int sizeColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.SIZE);
-
-                while (cursor.moveToNext()) {
-                    String path = cursor.getString(dataColumn);
-                    String name = cursor.getString(nameColumn);
-                    long size = cursor.getLong(sizeColumn);
-
-                    // Verificar que el archivo existe y tiene contenido
-                    File file = new File(path);
-                    if (file.exists() && file.canRead() && size > 0) {
-                        photoList.add(new Photo(path, name));
+        Log.i(TAG, "Catálogo reconciliado con MediaStore en " + elapsedMs + " ms ("
+                + photoList.size() + " fotos)");
+        Toast.makeText(this, "📷 " + photoList.size() + " fotos encontradas",
+                Toast.LENGTH_SHORT).show();
+
+        catalogDirty = true;
+        saveSnapshot();
+        indexMetadata();
+    }
+
+    /**
+     * true si la consulta devuelve las mismas fotos, en el mismo orden, que
+     * ya se están mostrando
+     */
+    private boolean sameCatalog(List<Photo> scanned) {
+        if (scanned.size() != photoList.size()) {
+            return false;
+        }
+        for (int i = 0; i < scanned.size(); i++) {
+            Photo shown = photoList.get(i);
+            Photo photo = scanned.get(i);
+            // DISPLAY_NAME puede ser null en MediaStore
+            if (shown.getId() != photo.getId() || !Objects.equals(shown.getName(), photo.getName())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Lee en segundo plano el EXIF de las fotos que todavía no se han
+     * mostrado, para que el mapa de calor incluya todo el catálogo. Lo leído
+     * queda en el snapshot, así que cada foto se lee una sola vez.
+     */
+    private void indexMetadata() {
+        if (metadataIndexing) {
+            return;
+        }
+
+        final List<Photo> pending = new ArrayList<>();
+        for (Photo photo : photoList) {
+            if (!photo.isMetadataLoaded()) {
+                pending.add(photo);
+            }
+        }
+        if (pending.isEmpty()) {
+            publishHeatmapPoints();
+            updateTrips();
+            return;
+        }
+
+        metadataIndexing = true;
+        final ContentResolver resolver = getContentResolver();
+        metadataExecutor.execute(() -> {
+            List<PhotoMetadataReader.Result> batch = new ArrayList<>();
+            for (Photo photo : pending) {
+                if (destroyed) {
+                    return;
+                }
+                PhotoMetadataReader.Result result = PhotoMetadataReader.read(resolver, photo);
+                if (result != null && result.available) {
+                    batch.add(result);
+                }
+                if (batch.size() == METADATA_BATCH) {
+                    final List<PhotoMetadataReader.Result> done = batch;
+                    mainHandler.post(() -> applyMetadata(done));
+                    batch = new ArrayList<>();
+                }
+            }
+            final List<PhotoMetadataReader.Result> done = batch;
+            mainHandler.post(() -> {
+                // Los executors ya están cerrados si la actividad se destruyó
+                if (destroyed) {
+                    return;
+                }
+                applyMetadata(done);
+                metadataIndexing = false;
+                Log.i(TAG, "Metadatos leídos de " + pending.size() + " fotos");
+                saveSnapshot();
+                publishHeatmapPoints();
+                updateTrips();
+            });
+        });
+    }
+
+    private void applyMetadata(List<PhotoMetadataReader.Result> results) {
+        for (PhotoMetadataReader.Result result : results) {
+            Photo photo = photosById.get(result.id);
+            if (photo != null) {
+                result.applyTo(photo);
+                catalogDirty = true;
+            }
+        }
+    }
+
+    /**
+     * Pasa al mapa de calor las coordenadas de todas las fotos geolocalizadas
+     */
+    private void publishHeatmapPoints() {
+        int count = 0;
+        for (Photo photo : photoList) {
+            if (photo.hasGeoData()) {
+                count++;
+            }
+        }
+        double[] latitudes = new double[count];
+        double[] longitudes = new double[count];
+        int i = 0;
+        for (Photo photo : photoList) {
+            if (photo.hasGeoData()) {
+                latitudes[i] = photo.getLatitude();
+                longitudes[i] = photo.getLongitude();
+                i++;
+            }
+        }
+        HeatmapTileCache.getInstance(this).setPoints(latitudes, longitudes);
+    }
+
+    /**
+     * Muestra u oculta la barra de acciones de la selección
+     */
+    private void onSelectionChanged(int count) {
+        if (count == 0) {
+            if (selectionMode != null) {
+                selectionMode.finish();
+            }
+            return;
+        }
+        if (selectionMode == null) {
+            selectionMode = startSupportActionMode(selectionCallback);
+        }
+        if (selectionMode != null) {
+            selectionMode.setTitle(count + " seleccionadas");
+        }
+    }
+
+    private final ActionMode.Callback selectionCallback = new ActionMode.Callback() {
+        @Override
+        public boolean onCreateActionMode(ActionMode mode, Menu menu) {
+            mode.getMenuInflater().inflate(R.menu.menu_selection, menu);
+            return true;
+        }
+
+        @Override
+        public boolean onPrepareActionMode(ActionMode mode, Menu menu) {
+            return false;
+        }
+
+        @Override
+        public boolean onActionItemClicked(ActionMode mode, MenuItem item) {
+            List<Photo> selected = photoAdapter.getSelectedPhotos();
+            int id = item.getItemId();
+            if (id == R.id.action_select_all) {
+                photoAdapter.selectAll();
+            } else if (selected.isEmpty()) {
+                return true;
+            } else if (id == R.id.action_share) {
+                startActivity(PhotoBatchOperations.createShareIntent(selected));
+            } else if (id == R.id.action_strip_location) {
+                confirmStripLocation(selected);
+            } else if (id == R.id.action_delete) {
+                confirmDelete(selected);
+            } else {
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public void onDestroyActionMode(ActionMode mode) {
+            selectionMode = null;
+            photoAdapter.clearSelection();
+        }
+    };
+
+    private void confirmDelete(final List<Photo> photos) {
+        new AlertDialog.Builder(this)
+                .setTitle("🗑 Eliminar " + photos.size() + " fotos")
+                .setMessage("Las fotos se borrarán del dispositivo.")
+                .setPositiveButton("Eliminar", (dialog, which) ->
+                        runWithWritePermission(() -> deletePhotos(photos)))
+                .setNegativeButton("Cancelar", null)
+                .show();
+    }
+
+    /**
+     * Android 11+ pide una sola confirmación al sistema para todo el lote;
+     * antes se borra en una transacción de MediaStore
+     */
+    private void deletePhotos(final List<Photo> photos) {
+        IntentSender request = PhotoBatchOperations.createDeleteRequest(getContentResolver(), photos);
+        if (request != null) {
+            startIntentSender(request, DELETE_REQUEST);
+            return;
+        }
+
+        final ContentResolver resolver = getContentResolver();
+        catalogExecutor.execute(() -> {
+            long start = SystemClock.elapsedRealtime();
+            try {
+                int deleted = PhotoBatchOperations.delete(resolver, photos);
+                Log.i(TAG, deleted + " fotos eliminadas en "
+                        + (SystemClock.elapsedRealtime() - start) + " ms");
+                mainHandler.post(() -> {
+                    // catalogExecutor ya está cerrado y loadPhotos no podría encolar
+                    if (!destroyed) {
+                        onPhotosDeleted(deleted);
+                        // La recarga actualiza el snapshot, el mapa de calor y los viajes
+                        loadPhotos();
+                    }
+                });
+            } catch (Exception e) {
+                Log.w(TAG, "No se pudieron eliminar las fotos", e);
+                mainHandler.post(() -> {
+                    if (!destroyed) {
+                        Toast.makeText(this, "❌ Error al eliminar: " + e.getMessage(),
+                                Toast.LENGTH_SHORT).show();
+                    }
+                });
+            }
+        });
+    }
+
+    private void onPhotosDeleted(int count) {
+        if (selectionMode != null) {
+            selectionMode.finish();
+        }
+        Toast.makeText(this, "🗑 " + count + " fotos eliminadas", Toast.LENGTH_SHORT).show();
+    }
+
+    private void confirmStripLocation(final List<Photo> photos) {
+        new AlertDialog.Builder(this)
+                .setTitle("🚫 Quitar ubicación de " + photos.size() + " fotos")
+                .setMessage("Se borrarán los datos GPS del EXIF de cada foto.")
+                .setPositiveButton("Quitar", (dialog, which) -> {
+                    IntentSender request = PhotoBatchOperations.createWriteRequest(
+                            getContentResolver(), photos);
+                    if (request != null) {
+                        pendingStrip = photos;
+                        startIntentSender(request, WRITE_REQUEST);
+                    } else {
+                        runWithWritePermission(() -> stripLocation(photos));
                     }
+                })
+                .setNegativeButton("Cancelar", null)
+                .show();
+    }
+
+    /**
+     * Reescribe el EXIF en paralelo con un diálogo de progreso cancelable
+     */
+    private void stripLocation(final List<Photo> photos) {
+        final ProgressBar progressBar = new ProgressBar(this, null,
+                android.R.attr.progressBarStyleHorizontal);
+        progressBar.setMax(photos.size());
+        int padding = (int) (24 * getResources().getDisplayMetrics().density);
+        progressBar.setPadding(padding, padding / 2, padding, 0);
+
+        final AlertDialog progressDialog = new AlertDialog.Builder(this)
+                .setTitle("🚫 Quitando ubicación")
+                .setMessage("0 / " + photos.size())
+                .setView(progressBar)
+                .setCancelable(false)
+                .setNegativeButton("Cancelar", (dialog, which) -> {
+                    if (stripTask != null) {
+                        stripTask.cancel();
+                    }
+                })
+                .show();
+
+        stripTask = PhotoBatchOperations.stripLocation(getContentResolver(), photos,
+                new PhotoBatchOperations.ProgressListener() {
+                    @Override
+                    public void onProgress(int done, int total) {
+                        progressBar.setProgress(done);
+                        progressDialog.setMessage(done + " / " + total);
+                    }
+
+                    @Override
+                    public void onFinished(List<Photo> processed, int failed, boolean cancelled) {
+                        stripTask = null;
+                        if (destroyed) {
+                            return;
+                        }
+                        progressDialog.dismiss();
+                        onLocationStripped(processed, failed, cancelled);
+                    }
+                });
+    }
+
+    private void onLocationStripped(List<Photo> processed, int failed, boolean cancelled) {
+        for (Photo stripped : processed) {
+            Photo photo = photosById.get(stripped.getId());
+            if (photo != null) {
+                photo.setLatitude(0);
+                photo.setLongitude(0);
+                photo.setPlaceName(null);
+                photo.setPlaceResolved(false);
+            }
+        }
+        if (selectionMode != null) {
+            selectionMode.finish();
+        }
+        photoAdapter.notifyDataSetChanged();
+        catalogDirty |= !processed.isEmpty();
+        saveSnapshot();
+        publishHeatmapPoints();
+        updateTrips();
+
+        String message = "🚫 Ubicación quitada de " + processed.size() + " fotos";
+        if (failed > 0) {
+            message += " (" + failed + " con error)";
+        }
+        if (cancelled) {
+            message += " · cancelado";
+        }
+        Toast.makeText(this, message, Toast.LENGTH_LONG).show();
+    }
+
+    /**
+     * En Android 10 el almacenamiento heredado necesita WRITE_EXTERNAL_STORAGE
+     * para modificar fotos de otras apps. Solo se pide al usarlo, para no
+     * bloquear la galería a quien solo concede lectura. Hasta Android 9 ya se
+     * pide al arrancar y desde Android 11 lo sustituye la petición del sistema.
+     */
+    private void runWithWritePermission(Runnable action) {
+        if (Build.VERSION.SDK_INT != Build.VERSION_CODES.Q
+                || ContextCompat.checkSelfPermission(this, Manifest.permission.WRITE_EXTERNAL_STORAGE)
+                == PackageManager.PERMISSION_GRANTED) {
+            action.run();
+            return;
+        }
+        pendingWriteAction = action;
+        ActivityCompat.requestPermissions(this,
+                new String[]{Manifest.permission.WRITE_EXTERNAL_STORAGE},
+                WRITE_PERMISSION_REQUEST_CODE);
+    }
+
+    private void startIntentSender(IntentSender request, int requestCode) {
+        try {
+            startIntentSenderForResult(request, requestCode, null, 0, 0, 0);
+        } catch (IntentSender.SendIntentException e) {
+            Log.w(TAG, "No se pudo pedir confirmación al sistema", e);
+        }
+    }
+
+    /**
+     * Mantiene los viajes al día con el catálogo. Las fotos nuevas más
+     * recientes que la última del motor se añaden sin más; si desaparece una
+     * foto o llega una más antigua, se reconstruye todo en segundo plano.
+     */
+    private void updateTrips() {
+        if (tripRebuilding) {
+            // Se vuelve a comparar con el catálogo al terminar la reconstrucción
+            tripPending = true;
+            return;
+        }
+
+        int known = 0;
+        List<TripPoint> added = new ArrayList<>();
+        for (Photo photo : photoList) {
+            if (isTripPhoto(photo)) {
+                if (tripPhotoIds.contains(photo.getId())) {
+                    known++;
+                } else {
+                    added.add(new TripPoint(photo));
+                }
+            }
+        }
+
+        if (tripEngine != null && known == tripPhotoIds.size()) {
+            if (added.isEmpty()) {
+                return;
+            }
+            Collections.sort(added, TRIP_ORDER);
+            if (added.get(0).takenMillis >= tripLastMillis) {
+                for (TripPoint point : added) {
+                    tripEngine.add(point.takenMillis, point.latitude, point.longitude);
+                    tripPhotoIds.add(point.id);
                 }
+                tripLastMillis = added.get(added.size() - 1).takenMillis;
+                Log.i(TAG, added.size() + " fotos añadidas a los viajes sin reconstruir");
+                return;
+            }
+        }
+        rebuildTrips();
+    }
 
-                Toast.makeText(this, "📷 " + photoList.size() + " fotos encontradas",
-                        Toast.LENGTH_SHORT).show();
+    /**
+     * Reconstruye los viajes en segundo plano: ordena por fecha las fotos
+     * geolocalizadas y las pasa una sola vez por el motor de viajes
+     */
+    private void rebuildTrips() {
+        // El catálogo viene por DATE_ADDED descendente; recorrido al revés ya
+        // está casi ordenado por fecha y el sort apenas tiene trabajo
+        final List<TripPoint> points = new ArrayList<>();
+        for (int i = photoList.size() - 1; i >= 0; i--) {
+            Photo photo = photoList.get(i);
+            if (isTripPhoto(photo)) {
+                points.add(new TripPoint(photo));
+            }
+        }
+        tripRebuilding = true;
+        tripPending = false;
+
+        metadataExecutor.execute(() -> {
+            long start = SystemClock.elapsedRealtime();
+            Collections.sort(points, TRIP_ORDER);
+
+            TripEngine engine = new TripEngine(TRIP_MAX_GAP_MILLIS, TRIP_MAX_GAP_METERS,
+                    TRIP_TOLERANCE_METERS);
+            Set<Long> ids = new HashSet<>(points.size() * 2);
+            for (TripPoint point : points) {
+                engine.add(point.takenMillis, point.latitude, point.longitude);
+                ids.add(point.id);
             }
-        } catch (Exception e) {
-            Toast.makeText(this, "❌ Error al cargar fotos: " + e.getMessage(),
+            long lastMillis = points.isEmpty()
+                    ? Long.MIN_VALUE : points.get(points.size() - 1).takenMillis;
+
+            long elapsed = SystemClock.elapsedRealtime() - start;
+            mainHandler.post(() -> {
+                if (destroyed) {
+                    return;
+                }
+                tripEngine = engine;
+                tripPhotoIds = ids;
+                tripLastMillis = lastMillis;
+                tripRebuilding = false;
+                Log.i(TAG, "Viajes reconstruidos en " + elapsed + " ms: "
+                        + engine.getTrips().size() + " viajes de " + points.size() + " fotos");
+                if (tripPending) {
+                    tripPending = false;
+                    updateTrips();
+                }
+            });
+        });
+    }
+
+    private static boolean isTripPhoto(Photo photo) {
+        return photo.hasGeoData() && photo.getTakenMillis() >= 0;
+    }
+
+    /**
+     * Muestra el resumen de cada viaje
+     */
+    private void showTrips() {
+        List<TripEngine.Trip> trips = tripEngine != null
+                ? tripEngine.getTrips() : new ArrayList<TripEngine.Trip>();
+        if (trips.isEmpty()) {
+            Toast.makeText(this, "🧭 Aún no hay viajes con fotos geolocalizadas",
                     Toast.LENGTH_SHORT).show();
+            return;
         }
 
-        photoAdapter.updatePhotos(photoList);
+        SimpleDateFormat dayFormat = new SimpleDateFormat("dd/MM/yyyy HH:mm", Locale.getDefault());
+        SimpleDateFormat hourFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
+        String[] items = new String[trips.size()];
+        for (int i = 0; i < items.length; i++) {
+            TripEngine.Trip trip = trips.get(i);
+            items[i] = String.format(Locale.getDefault(),
+                    "%s – %s\n📷 %d fotos · %.1f km · %.1f km/h (máx %.1f) · %d puntos de ruta",
+                    dayFormat.format(new Date(trip.getStartMillis())),
+                    hourFormat.format(new Date(trip.getEndMillis())),
+                    trip.getPhotoCount(),
+                    trip.getDistanceMeters() / 1000,
+                    trip.getAverageSpeedMps() * 3.6,
+                    trip.getMaxSpeedMps() * 3.6,
+                    trip.getRoute().length / 2);
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle("🧭 " + trips.size() + " viajes")
+                .setItems(items, null)
+                .setPositiveButton("Cerrar", null)
+                .show();
+    }
+
+    /**
+     * Abre el índice de lugares para la geocodificación inversa sin conexión.
+     *
+     * El gazetteer (formato GeoNames) se toma de la carpeta externa de la app
+     * si se ha copiado allí, o de los assets si viene incluido en el APK. El
+     * índice binario se regenera solo cuando el gazetteer es más reciente.
+     */
+    private void loadReverseGeocoder() {
+        final File externalDir = getExternalFilesDir(null);
+        final File index = new File(getFilesDir(), GAZETTEER_INDEX_FILE);
+
+        geocoderExecutor.execute(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            try {
+                File gazetteer = externalDir != null ? new File(externalDir, GAZETTEER_FILE) : null;
+                if (gazetteer == null || !gazetteer.isFile()) {
+                    gazetteer = copyGazetteerAsset();
+                }
+
+                final boolean rebuilt =
+                        gazetteer != null && gazetteer.lastModified() > index.lastModified();
+                if (rebuilt) {
+                    ReverseGeocoder.buildIndex(gazetteer, index);
+                }
+                if (!index.isFile()) {
+                    return;
+                }
+
+                ReverseGeocoder geocoder = ReverseGeocoder.open(index);
+                Log.i(TAG, "Gazetteer cargado: " + geocoder.size() + " lugares");
+                mainHandler.post(() -> {
+                    if (isDestroyed()) {
+                        return;
+                    }
+                    if (rebuilt) {
+                        // Los nombres guardados salen del gazetteer anterior
+                        for (Photo photo : photoList) {
+                            photo.setPlaceName(null);
+                            photo.setPlaceResolved(false);
+                        }
+                        catalogDirty = true;
+                    }
+                    photoAdapter.setReverseGeocoder(geocoder);
+                });
+            } catch (IOException e) {
+                Log.w(TAG, "No se pudo cargar el gazetteer", e);
+            }
+        });
+    }
+
+    /**
+     * Copia el gazetteer incluido en assets la primera vez y tras cada
+     * actualización del APK. Devuelve null si el APK no trae ninguno.
+     */
+    private File copyGazetteerAsset() throws IOException {
+        File target = new File(getFilesDir(), GAZETTEER_FILE);
+        if (target.isFile() && target.lastModified() >= apkUpdateTime()) {
+            return target;
+        }
+
+        InputStream inputStream;
+        try {
+            inputStream = getAssets().open(GAZETTEER_FILE);
+        } catch (IOException e) {
+            return null;
+        }
+
+        File tmp = new File(getFilesDir(), GAZETTEER_FILE + ".tmp");
+        try (InputStream in = inputStream;
+             OutputStream out = new FileOutputStream(tmp)) {
+            byte[] buffer = new byte[8192];
+            int bytesRead;
+            while ((bytesRead = in.read(buffer)) != -1) {
+                out.write(buffer, 0, bytesRead);
+            }
+        }
+        if (!tmp.renameTo(target)) {
+            tmp.delete();
+            return null;
+        }
+        return target;
+    }
+
+    /**
+     * Momento de la instalación o de la última actualización del APK
+     */
+    private long apkUpdateTime() {
+        try {
+            return getPackageManager().getPackageInfo(getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Guarda el catálogo actual en segundo plano si cambió desde la última
+     * vez que se guardó
+     */
+    private void saveSnapshot() {
+        int metadataRevision = photoAdapter.getMetadataRevision();
+        if (!catalogDirty && metadataRevision == savedMetadataRevision) {
+            return;
+        }
+        catalogDirty = false;
+        savedMetadataRevision = metadataRevision;
+
+        final List<Photo> copy = new ArrayList<>(photoList);
+        final File file = new File(getFilesDir(), SNAPSHOT_FILE);
+        catalogExecutor.execute(() -> {
+            try {
+                PhotoCatalogSnapshot.write(file, copy);
+            } catch (IOException e) {
+                Log.w(TAG, "No se pudo guardar el snapshot del catálogo", e);
+            }
+        });
     }
 
     /**
@@ -232,9 +943,27 @@ public class MainActivity extends AppCompatActivity {
         super.onActivityResult(requestCode, resultCode, data);
 
         if (requestCode == CAMERA_ACTIVITY_REQUEST && resultCode == RESULT_OK) {
-            // Recargar fotos después de tomar una nueva
-            loadPhotos();
+            // Invalidar al momento los tiles del mapa de calor de la nueva foto
+            if (data != null && data.hasExtra(CameraActivity.EXTRA_LATITUDE)) {
+                HeatmapTileCache.getInstance(this).addPoint(
+                        data.getDoubleExtra(CameraActivity.EXTRA_LATITUDE, 0),
+                        data.getDoubleExtra(CameraActivity.EXTRA_LONGITUDE, 0));
+            }
+
+            // onResume recarga las fotos a continuación. En cuanto se lea el
+            // EXIF de la nueva, updateTrips la añade al viaje en curso
             Toast.makeText(this, "✓ Foto guardada correctamente", Toast.LENGTH_SHORT).show();
+        } else if (requestCode == DELETE_REQUEST) {
+            if (resultCode == RESULT_OK) {
+                // El sistema ya borró las fotos; onResume recarga el catálogo
+                onPhotosDeleted(photoAdapter.getSelectedPhotos().size());
+            }
+        } else if (requestCode == WRITE_REQUEST) {
+            List<Photo> photos = pendingStrip;
+            pendingStrip = null;
+            if (resultCode == RESULT_OK && photos != null) {
+                stripLocation(photos);
+            }
         }
     }
 
@@ -248,4 +977,45 @@ public class MainActivity extends AppCompatActivity {
             loadPhotos();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Guarda los metadatos leídos durante la sesión para el próximo arranque
+     */
+    @Override
+    protected void onStop() {
+        super.onStop();
+        saveSnapshot();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        destroyed = true;
+        if (stripTask != null) {
+            stripTask.cancel();
+        }
+        metadataExecutor.shutdownNow();
+        photoAdapter.release();
+        // Deja terminar la escritura pendiente del snapshot y la del índice
+        catalogExecutor.shutdown();
+        geocoderExecutor.shutdown();
+    }
+
+    /**
+     * Copia de lo que el motor de viajes necesita de una foto, para poder
+     * ordenarla fuera del hilo principal
+     */
+    private static final class TripPoint {
+        final long id;
+        final long takenMillis;
+        final double latitude;
+        final double longitude;
+
+        TripPoint(Photo photo) {
+            id = photo.getId();
+            takenMillis = photo.getTakenMillis();
+            latitude = photo.getLatitude();
+            longitude = photo.getLongitude();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.camarageolocalizacion;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.provider.MediaStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Consulta el catálogo de imágenes de MediaStore.
+ *
+ * Solo se leen columnas de la base de datos: la validez de cada fila se
+ * comprueba con SIZE e IS_PENDING en la propia consulta, sin tocar el sistema
+ * de archivos, y las fotos se abren después por su URI de contenido.
+ */
+public final class MediaStorePhotoLoader {
+
+    private MediaStorePhotoLoader() {
+    }
+
+    /**
+     * Devuelve las fotos válidas, de la más reciente a la más antigua.
+     * No llamar desde el hilo principal.
+     */
+    public static List<Photo> query(ContentResolver resolver) {
+        List<Photo> photos = new ArrayList<>();
+
+        Uri collection;
+        String selection;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            collection = MediaStore.Images.Media.getContentUri(MediaStore.VOLUME_EXTERNAL);
+            // Descartar fotos que otra app todavía está escribiendo
+            selection = MediaStore.Images.Media.SIZE + " > 0 AND "
+                    + MediaStore.Images.Media.IS_PENDING + " = 0";
+        } else {
+            collection = MediaStore.Images.Media.EXTERNAL_CONTENT_URI;
+            selection = MediaStore.Images.Media.SIZE + " > 0";
+        }
+
+        String[] projection = new String[]{
+                MediaStore.Images.Media._ID,
+                MediaStore.Images.Media.DISPLAY_NAME
+        };
+
+        String sortOrder = MediaStore.Images.Media.DATE_ADDED + " DESC";
+
+        try (Cursor cursor = resolver.query(
+                collection,
+                projection,
+                selection,
+                null,
+                sortOrder
+        )) {
+            if (cursor != null) {
+                int idColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media._ID);
+                int nameColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.DISPLAY_NAME);
+
+                while (cursor.moveToNext()) {
+                    photos.add(new Photo(cursor.getLong(idColumn), cursor.getString(nameColumn)));
+                }
+            }
+        }
+
+        return photos;
+    }
+
+    /**
+     * Copia a las fotos recién consultadas los metadatos ya leídos de las
+     * mismas fotos en el catálogo anterior. Una foto con el mismo _ID pero
+     * otro nombre se considera nueva.
+     */
+    public static void reconcile(List<Photo> scanned, Map<Long, Photo> previousById) {
+        for (Photo photo : scanned) {
+            Photo previous = previousById.get(photo.getId());
+            // DISPLAY_NAME puede ser null en MediaStore
+            if (previous != null && Objects.equals(photo.getName(), previous.getName())) {
+                photo.setLatitude(previous.getLatitude());
+                photo.setLongitude(previous.getLongitude());
+                photo.setDateTime(previous.getDateTime());
+                photo.setTakenMillis(previous.getTakenMillis());
+                photo.setPlaceName(previous.getPlaceName());
+                photo.setPlaceResolved(previous.isPlaceResolved());
+                photo.setMetadataLoaded(previous.isMetadataLoaded());
+            }
+        }
+    }
+}
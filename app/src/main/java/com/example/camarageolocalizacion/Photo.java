@@ -1,23 +1,38 @@
 package com.example.camarageolocalizacion;
 
+import android.content.ContentUris;
+import android.net.Uri;
+import android.provider.MediaStore;
+
 public class Photo {
-    private String path;
+    private long id;
     private String name;
     private double latitude;
     private double longitude;
     private String dateTime;
+    private long takenMillis = -1;
+    private String placeName;
+    private boolean placeResolved;
+    private boolean metadataLoaded;
 
-    public Photo(String path, String name) {
-        this.path = path;
+    public Photo(long id, String name) {
+        this.id = id;
         this.name = name;
     }
 
-    public String getPath() {
-        return path;
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
     }
 
-    public void setPath(String path) {
-        this.path = path;
+    /**
+     * URI de contenido de MediaStore construido a partir del _ID
+     */
+    public Uri getUri() {
+        return ContentUris.withAppendedId(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, id);
     }
 
     public String getName() {
@@ -52,6 +67,48 @@ public class Photo {
         this.dateTime = dateTime;
     }
 
+    /**
+     * dateTime ya interpretado, en milisegundos; -1 si no hay fecha válida
+     */
+    public long getTakenMillis() {
+        return takenMillis;
+    }
+
+    public void setTakenMillis(long takenMillis) {
+        this.takenMillis = takenMillis;
+    }
+
+    public String getPlaceName() {
+        return placeName;
+    }
+
+    public void setPlaceName(String placeName) {
+        this.placeName = placeName;
+    }
+
+    /**
+     * Indica si ya se buscó el lugar más cercano; placeName puede seguir en
+     * null si no había ninguno cerca
+     */
+    public boolean isPlaceResolved() {
+        return placeResolved;
+    }
+
+    public void setPlaceResolved(boolean placeResolved) {
+        this.placeResolved = placeResolved;
+    }
+
+    /**
+     * Indica si ya se leyó el EXIF de la foto (tenga o no GPS)
+     */
+    public boolean isMetadataLoaded() {
+        return metadataLoaded;
+    }
+
+    public void setMetadataLoaded(boolean metadataLoaded) {
+        this.metadataLoaded = metadataLoaded;
+    }
+
     public boolean hasGeoData() {
         return latitude != 0.0 && longitude != 0.0;
     }
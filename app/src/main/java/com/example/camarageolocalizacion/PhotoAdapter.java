@@ -1,7 +1,10 @@
 package com.example.camarageolocalizacion;
 
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -10,126 +13,353 @@ import android.widget.LinearLayout;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
-import androidx.exifinterface.media.ExifInterface;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.io.File;
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class PhotoAdapter extends RecyclerView.Adapter<PhotoAdapter.PhotoViewHolder> {
 
+    private static final String TAG = "PhotoAdapter";
+    // Cambio parcial: solo se vuelve a pintar la marca de selección
+    private static final Object SELECTION_PAYLOAD = new Object();
+    private static final String MISSING_FILE = "❌ Archivo no disponible";
+    private static final String UNREADABLE_METADATA = "⚠ No se pudieron leer metadatos";
+
+    /**
+     * Aviso de cambios en la selección múltiple
+     */
+    public interface SelectionListener {
+        void onSelectionChanged(int count);
+    }
+
     private List<Photo> photoList;
+    private ReverseGeocoder reverseGeocoder;
+    private ThumbnailLoader thumbnailLoader;
+    private ContentResolver resolver;
+
+    // Lectura de EXIF de las celdas visibles cuyo Photo aún no tiene metadatos
+    private final ExecutorService metadataExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Set<Long> wantedMetadata =
+            Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+    private final Map<Long, String> metadataErrors = new HashMap<>();
+    private final Map<Long, PhotoViewHolder> boundHolders = new HashMap<>();
+    // Cuenta los metadatos y nombres de lugar escritos en las fotos
+    private int metadataRevision;
+
+    private final Set<Long> selectedIds = new HashSet<>();
+    private SelectionListener selectionListener;
 
     public PhotoAdapter(List<Photo> photoList) {
         this.photoList = photoList;
     }
 
+    /**
+     * Activa los nombres de lugar en lugar de coordenadas
+     */
+    public void setReverseGeocoder(ReverseGeocoder reverseGeocoder) {
+        this.reverseGeocoder = reverseGeocoder;
+        notifyDataSetChanged();
+    }
+
+    public void setSelectionListener(SelectionListener selectionListener) {
+        this.selectionListener = selectionListener;
+    }
+
+    /**
+     * Con al menos una foto seleccionada, un toque selecciona en lugar de abrir
+     */
+    public boolean isSelectionMode() {
+        return !selectedIds.isEmpty();
+    }
+
+    /**
+     * Fotos seleccionadas, en el orden de la galería
+     */
+    public List<Photo> getSelectedPhotos() {
+        List<Photo> selected = new ArrayList<>(selectedIds.size());
+        for (Photo photo : photoList) {
+            if (selectedIds.contains(photo.getId())) {
+                selected.add(photo);
+            }
+        }
+        return selected;
+    }
+
+    public void selectAll() {
+        for (Photo photo : photoList) {
+            selectedIds.add(photo.getId());
+        }
+        onSelectionChanged();
+    }
+
+    public void clearSelection() {
+        if (selectedIds.isEmpty()) {
+            return;
+        }
+        selectedIds.clear();
+        onSelectionChanged();
+    }
+
+    private void toggleSelection(Photo photo, int position) {
+        if (!selectedIds.remove(photo.getId())) {
+            selectedIds.add(photo.getId());
+        }
+        if (position != RecyclerView.NO_POSITION) {
+            notifyItemChanged(position, SELECTION_PAYLOAD);
+        }
+        if (selectionListener != null) {
+            selectionListener.onSelectionChanged(selectedIds.size());
+        }
+    }
+
+    private void onSelectionChanged() {
+        notifyItemRangeChanged(0, photoList.size(), SELECTION_PAYLOAD);
+        if (selectionListener != null) {
+            selectionListener.onSelectionChanged(selectedIds.size());
+        }
+    }
+
     @NonNull
     @Override
     public PhotoViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(parent.getContext())
                 .inflate(R.layout.item_photo, parent, false);
+
+        if (thumbnailLoader == null) {
+            resolver = parent.getContext().getApplicationContext().getContentResolver();
+            // Alto de la imagen en item_photo
+            float density = parent.getResources().getDisplayMetrics().density;
+            thumbnailLoader = new ThumbnailLoader(resolver, (int) (240 * density));
+        }
         return new PhotoViewHolder(view);
     }
 
     @Override
-    public void onBindViewHolder(@NonNull PhotoViewHolder holder, int position) {
-        Photo photo = photoList.get(position);
-
-        // Verificar que el archivo existe
-        File file = new File(photo.getPath());
-        if (!file.exists() || !file.canRead()) {
-            holder.tvFileName.setText(photo.getName());
-            holder.tvError.setText("❌ Archivo no disponible");
-            holder.tvError.setVisibility(View.VISIBLE);
-            holder.imageView.setImageBitmap(null);
-            return;
+    public void onBindViewHolder(@NonNull PhotoViewHolder holder, int position,
+                                 @NonNull List<Object> payloads) {
+        if (payloads.contains(SELECTION_PAYLOAD)) {
+            // Sin volver a leer el EXIF ni la miniatura
+            bindSelection(holder, photoList.get(position));
+        } else {
+            onBindViewHolder(holder, position);
         }
+    }
 
-        // Cargar imagen con escala reducida
-        try {
-            BitmapFactory.Options options = new BitmapFactory.Options();
-            options.inSampleSize = 4;
-            options.inJustDecodeBounds = false;
-
-            Bitmap bitmap = BitmapFactory.decodeFile(photo.getPath(), options);
+    @Override
+    public void onBindViewHolder(@NonNull PhotoViewHolder holder, int position) {
+        Photo photo = photoList.get(position);
 
-            if (bitmap != null) {
-                holder.imageView.setImageBitmap(bitmap);
-            } else {
-                holder.imageView.setImageBitmap(null);
-                holder.tvError.setText("❌ Error al decodificar");
-                holder.tvError.setVisibility(View.VISIBLE);
-                return;
-            }
-        } catch (Exception e) {
-            holder.imageView.setImageBitmap(null);
-            holder.tvError.setText("❌ Error al cargar imagen");
-            holder.tvError.setVisibility(View.VISIBLE);
-            return;
-        }
+        Uri uri = photo.getUri();
 
         // Establecer nombre del archivo
         holder.tvFileName.setText(photo.getName());
 
-        // Leer metadatos EXIF
-        try {
-            ExifInterface exif = new ExifInterface(photo.getPath());
+        // Pulsación larga para seleccionar; en modo selección, también un toque
+        bindSelection(holder, photo);
+        holder.itemView.setOnLongClickListener(v -> {
+            toggleSelection(photo, holder.getBindingAdapterPosition());
+            return true;
+        });
 
-            // Leer geolocalización
-            float[] latLong = new float[2];
-            boolean hasGeo = exif.getLatLong(latLong);
+        // La celda puede venir de otra foto sin haberse reciclado
+        if (holder.photo != null && boundHolders.get(holder.photo.getId()) == holder) {
+            boundHolders.remove(holder.photo.getId());
+        }
 
-            // Leer fecha/hora
-            String dateTime = exif.getAttribute(ExifInterface.TAG_DATETIME);
+        // Abrir el visor a pantalla completa
+        holder.itemView.setOnClickListener(v -> {
+            if (isSelectionMode()) {
+                toggleSelection(photo, holder.getBindingAdapterPosition());
+            } else if (!MISSING_FILE.equals(metadataErrors.get(photo.getId()))) {
+                v.getContext().startActivity(PhotoViewerActivity.newIntent(v.getContext(), photo));
+            }
+        });
 
-            if (hasGeo) {
-                // Mostrar badge GPS
-                holder.tvGpsBadge.setVisibility(View.VISIBLE);
+        // Cargar imagen: miniatura EXIF y después la versión reducida, en segundo plano
+        thumbnailLoader.load(uri, holder.imageView, () -> {
+            holder.tvError.setText("❌ Error al decodificar");
+            holder.tvError.setVisibility(View.VISIBLE);
+        });
 
-                // Mostrar ubicación
-                holder.layoutGps.setVisibility(View.VISIBLE);
-                holder.tvLocation.setText(String.format("%.6f, %.6f", latLong[0], latLong[1]));
+        // Los metadatos no se leen en el hilo principal: si aún no están, se
+        // muestran al terminar la lectura
+        holder.photo = photo;
+        boundHolders.put(photo.getId(), holder);
+        if (photo.isMetadataLoaded() || metadataErrors.containsKey(photo.getId())) {
+            bindMetadata(holder, photo);
+        } else {
+            holder.tvGpsBadge.setVisibility(View.GONE);
+            holder.layoutGps.setVisibility(View.GONE);
+            holder.layoutDateTime.setVisibility(View.GONE);
+            holder.tvError.setVisibility(View.GONE);
+            requestMetadata(photo);
+        }
+    }
 
-                photo.setLatitude(latLong[0]);
-                photo.setLongitude(latLong[1]);
+    private void bindMetadata(PhotoViewHolder holder, Photo photo) {
+        String error = metadataErrors.get(photo.getId());
+        if (error != null) {
+            holder.tvError.setText(error);
+            holder.tvError.setVisibility(View.VISIBLE);
+            holder.tvGpsBadge.setVisibility(View.GONE);
+            holder.layoutGps.setVisibility(View.GONE);
+            holder.layoutDateTime.setVisibility(View.GONE);
+            return;
+        }
 
-                holder.tvError.setVisibility(View.GONE);
-            } else {
-                holder.tvGpsBadge.setVisibility(View.GONE);
-                holder.layoutGps.setVisibility(View.GONE);
-                holder.tvError.setText("⚠ Sin geolocalización");
-                holder.tvError.setVisibility(View.VISIBLE);
-            }
+        if (photo.hasGeoData()) {
+            // Mostrar badge GPS y ubicación
+            holder.tvGpsBadge.setVisibility(View.VISIBLE);
+            holder.layoutGps.setVisibility(View.VISIBLE);
 
-            if (dateTime != null && !dateTime.isEmpty()) {
-                holder.layoutDateTime.setVisibility(View.VISIBLE);
-                holder.tvDateTime.setText(dateTime);
-                photo.setDateTime(dateTime);
+            // Nombre del lugar más cercano, calculado una sola vez por foto; lejos
+            // de cualquier lugar queda en null y se muestran las coordenadas
+            if (!photo.isPlaceResolved() && reverseGeocoder != null) {
+                photo.setPlaceName(reverseGeocoder.nearest(photo.getLatitude(), photo.getLongitude()));
+                photo.setPlaceResolved(true);
+                metadataRevision++;
+            }
+            if (photo.getPlaceName() != null) {
+                holder.tvLocation.setText(photo.getPlaceName());
             } else {
-                holder.layoutDateTime.setVisibility(View.GONE);
+                holder.tvLocation.setText(String.format("%.6f, %.6f",
+                        photo.getLatitude(), photo.getLongitude()));
             }
 
-        } catch (IOException e) {
-            holder.tvError.setText("⚠ No se pudieron leer metadatos");
-            holder.tvError.setVisibility(View.VISIBLE);
+            holder.tvError.setVisibility(View.GONE);
+        } else {
+            holder.tvGpsBadge.setVisibility(View.GONE);
             holder.layoutGps.setVisibility(View.GONE);
+            holder.tvError.setText("⚠ Sin geolocalización");
+            holder.tvError.setVisibility(View.VISIBLE);
+        }
+
+        String dateTime = photo.getDateTime();
+        if (dateTime != null && !dateTime.isEmpty()) {
+            holder.layoutDateTime.setVisibility(View.VISIBLE);
+            holder.tvDateTime.setText(dateTime);
+        } else {
             holder.layoutDateTime.setVisibility(View.GONE);
         }
     }
 
+    /**
+     * Lee el EXIF de una foto visible en segundo plano. Si la celda se
+     * recicla antes de empezar, la lectura se descarta.
+     */
+    private void requestMetadata(final Photo photo) {
+        final long id = photo.getId();
+        if (!wantedMetadata.add(id)) {
+            return;
+        }
+        metadataExecutor.execute(() -> {
+            if (!wantedMetadata.contains(id)) {
+                return;
+            }
+            final PhotoMetadataReader.Result result = PhotoMetadataReader.read(resolver, photo);
+            mainHandler.post(() -> {
+                wantedMetadata.remove(id);
+                if (result == null) {
+                    metadataErrors.put(id, UNREADABLE_METADATA);
+                } else if (!result.available) {
+                    // La foto ya no existe o no tenemos acceso
+                    metadataErrors.put(id, MISSING_FILE);
+                } else {
+                    result.applyTo(photo);
+                    metadataRevision++;
+                }
+
+                PhotoViewHolder holder = boundHolders.get(id);
+                if (holder != null) {
+                    if (result != null && result.available && holder.photo != photo) {
+                        // El catálogo se recargó mientras se leía
+                        result.applyTo(holder.photo);
+                    }
+                    bindMetadata(holder, holder.photo);
+                }
+            });
+        });
+    }
+
+    /**
+     * Cambia cada vez que el adaptador completa los datos de una foto; sirve
+     * para saber si hay algo nuevo que guardar en el snapshot
+     */
+    public int getMetadataRevision() {
+        return metadataRevision;
+    }
+
     @Override
     public int getItemCount() {
         return photoList.size();
     }
 
+    @Override
+    public void onViewRecycled(@NonNull PhotoViewHolder holder) {
+        super.onViewRecycled(holder);
+        thumbnailLoader.cancel(holder.imageView);
+        if (holder.photo != null) {
+            long id = holder.photo.getId();
+            if (boundHolders.get(id) == holder) {
+                boundHolders.remove(id);
+            }
+            // Si la lectura todavía no empezó, ya no hace falta
+            wantedMetadata.remove(id);
+            holder.photo = null;
+        }
+    }
+
     public void updatePhotos(List<Photo> newPhotos) {
         this.photoList = newPhotos;
+
+        // Olvidar la selección de fotos que ya no existen
+        int selectedBefore = selectedIds.size();
+        if (selectedBefore > 0) {
+            Set<Long> present = new HashSet<>();
+            for (Photo photo : newPhotos) {
+                if (selectedIds.contains(photo.getId())) {
+                    present.add(photo.getId());
+                }
+            }
+            selectedIds.retainAll(present);
+        }
+
         notifyDataSetChanged();
+        if (selectedIds.size() != selectedBefore && selectionListener != null) {
+            selectionListener.onSelectionChanged(selectedIds.size());
+        }
+    }
+
+    private void bindSelection(PhotoViewHolder holder, Photo photo) {
+        boolean selected = selectedIds.contains(photo.getId());
+        holder.tvSelected.setVisibility(selected ? View.VISIBLE : View.GONE);
+        holder.imageView.setAlpha(selected ? 0.6f : 1f);
+    }
+
+    /**
+     * Libera los hilos de decodificación. Llamar desde onDestroy.
+     */
+    public void release() {
+        metadataExecutor.shutdownNow();
+        if (thumbnailLoader != null) {
+            Log.i(TAG, thumbnailLoader.getStats());
+            thumbnailLoader.shutdown();
+        }
     }
 
     static class PhotoViewHolder extends RecyclerView.ViewHolder {
+        // Foto mostrada, para completar la celda cuando llegan sus metadatos
+        Photo photo;
         ImageView imageView;
         TextView tvFileName;
         TextView tvGpsBadge;
@@ -138,6 +368,7 @@ public class PhotoAdapter extends RecyclerView.Adapter<PhotoAdapter.PhotoViewHol
         LinearLayout layoutDateTime;
         TextView tvDateTime;
         TextView tvError;
+        TextView tvSelected;
 
         public PhotoViewHolder(@NonNull View itemView) {
             super(itemView);
@@ -149,6 +380,7 @@ public class PhotoAdapter extends RecyclerView.Adapter<PhotoAdapter.PhotoViewHol
             layoutDateTime = itemView.findViewById(R.id.layoutDateTime);
             tvDateTime = itemView.findViewById(R.id.tvDateTime);
             tvError = itemView.findViewById(R.id.tvError);
+            tvSelected = itemView.findViewById(R.id.tvSelected);
         }
     }
 }
\ No newline at end of file
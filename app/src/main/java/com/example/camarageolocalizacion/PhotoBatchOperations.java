@@ -0,0 +1,318 @@
+package com.example.camarageolocalizacion;
+
+import android.content.ClipData;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
+import android.content.Intent;
+import android.content.IntentSender;
+import android.content.OperationApplicationException;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.os.RemoteException;
+import android.os.SystemClock;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import androidx.exifinterface.media.ExifInterface;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Acciones sobre varias fotos a la vez: borrar, quitar la ubicación y compartir.
+ *
+ * Los cambios en MediaStore van en transacciones de applyBatch o, en Android
+ * 11+, en una sola petición de consentimiento del sistema para todo el lote.
+ * La reescritura del EXIF se reparte entre unos pocos hilos y se puede
+ * cancelar; las fotos que aún no han empezado se saltan.
+ */
+public final class PhotoBatchOperations {
+
+    private static final String TAG = "PhotoBatchOperations";
+
+    private static final int REWRITE_THREADS =
+            Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    // Operaciones por transacción de applyBatch
+    private static final int BATCH_SIZE = 500;
+    private static final long PROGRESS_INTERVAL_MS = 100;
+
+    private static final String[] LOCATION_TAGS = {
+            ExifInterface.TAG_GPS_VERSION_ID,
+            ExifInterface.TAG_GPS_LATITUDE_REF,
+            ExifInterface.TAG_GPS_LATITUDE,
+            ExifInterface.TAG_GPS_LONGITUDE_REF,
+            ExifInterface.TAG_GPS_LONGITUDE,
+            ExifInterface.TAG_GPS_ALTITUDE_REF,
+            ExifInterface.TAG_GPS_ALTITUDE,
+            ExifInterface.TAG_GPS_TIMESTAMP,
+            ExifInterface.TAG_GPS_DATESTAMP,
+            ExifInterface.TAG_GPS_SATELLITES,
+            ExifInterface.TAG_GPS_STATUS,
+            ExifInterface.TAG_GPS_MEASURE_MODE,
+            ExifInterface.TAG_GPS_DOP,
+            ExifInterface.TAG_GPS_SPEED_REF,
+            ExifInterface.TAG_GPS_SPEED,
+            ExifInterface.TAG_GPS_TRACK_REF,
+            ExifInterface.TAG_GPS_TRACK,
+            ExifInterface.TAG_GPS_IMG_DIRECTION_REF,
+            ExifInterface.TAG_GPS_IMG_DIRECTION,
+            ExifInterface.TAG_GPS_MAP_DATUM,
+            ExifInterface.TAG_GPS_DEST_LATITUDE_REF,
+            ExifInterface.TAG_GPS_DEST_LATITUDE,
+            ExifInterface.TAG_GPS_DEST_LONGITUDE_REF,
+            ExifInterface.TAG_GPS_DEST_LONGITUDE,
+            ExifInterface.TAG_GPS_DEST_BEARING_REF,
+            ExifInterface.TAG_GPS_DEST_BEARING,
+            ExifInterface.TAG_GPS_DEST_DISTANCE_REF,
+            ExifInterface.TAG_GPS_DEST_DISTANCE,
+            ExifInterface.TAG_GPS_PROCESSING_METHOD,
+            ExifInterface.TAG_GPS_AREA_INFORMATION,
+            ExifInterface.TAG_GPS_DIFFERENTIAL,
+            ExifInterface.TAG_GPS_H_POSITIONING_ERROR,
+    };
+
+    /**
+     * Avisos de una tarea por lotes, siempre en el hilo principal
+     */
+    public interface ProgressListener {
+        void onProgress(int done, int total);
+
+        /**
+         * @param processed fotos modificadas correctamente
+         * @param failed    fotos que no se pudieron modificar
+         * @param cancelled true si se canceló antes de terminar
+         */
+        void onFinished(List<Photo> processed, int failed, boolean cancelled);
+    }
+
+    /**
+     * Tarea en curso
+     */
+    public static final class Task {
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+
+        public void cancel() {
+            cancelled.set(true);
+        }
+
+        public boolean isCancelled() {
+            return cancelled.get();
+        }
+    }
+
+    private PhotoBatchOperations() {
+    }
+
+    /**
+     * Android 11+: una sola petición del sistema para borrar todas las fotos.
+     * Devuelve null en versiones anteriores; ahí se usa {@link #delete}.
+     */
+    public static IntentSender createDeleteRequest(ContentResolver resolver, List<Photo> photos) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.R) {
+            return null;
+        }
+        return MediaStore.createDeleteRequest(resolver, toUris(photos)).getIntentSender();
+    }
+
+    /**
+     * Android 11+: una sola petición del sistema para poder modificar todas
+     * las fotos. Devuelve null en versiones anteriores.
+     */
+    public static IntentSender createWriteRequest(ContentResolver resolver, List<Photo> photos) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.R) {
+            return null;
+        }
+        return MediaStore.createWriteRequest(resolver, toUris(photos)).getIntentSender();
+    }
+
+    /**
+     * Borra las fotos con applyBatch (Android 10 y anteriores, con permiso de
+     * escritura). Devuelve el número de fotos borradas. No llamar desde el
+     * hilo principal.
+     */
+    public static int delete(ContentResolver resolver, List<Photo> photos)
+            throws RemoteException, OperationApplicationException {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        for (Photo photo : photos) {
+            operations.add(ContentProviderOperation.newDelete(photo.getUri()).build());
+        }
+        return applyInBatches(resolver, operations);
+    }
+
+    /**
+     * Quita la ubicación del EXIF de las fotos en segundo plano. En Android 11+
+     * hay que tener antes el consentimiento de {@link #createWriteRequest}.
+     */
+    public static Task stripLocation(final ContentResolver resolver, final List<Photo> photos,
+                                     final ProgressListener listener) {
+        final Task task = new Task();
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        final int total = photos.size();
+        final List<Photo> processed = Collections.synchronizedList(new ArrayList<Photo>());
+        final AtomicInteger done = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final AtomicLong lastProgressMs = new AtomicLong();
+        final long start = SystemClock.elapsedRealtime();
+
+        if (total == 0) {
+            mainHandler.post(() -> listener.onFinished(processed, 0, false));
+            return task;
+        }
+
+        final ExecutorService pool = Executors.newFixedThreadPool(REWRITE_THREADS);
+        for (final Photo photo : photos) {
+            pool.execute(() -> {
+                if (!task.isCancelled()) {
+                    if (removeLocation(resolver, photo)) {
+                        processed.add(photo);
+                    } else {
+                        failed.incrementAndGet();
+                    }
+                }
+
+                final int count = done.incrementAndGet();
+                if (count == total) {
+                    updateMediaStoreLocation(resolver, processed);
+                    Log.i(TAG, "Ubicación quitada de " + processed.size() + " fotos en "
+                            + (SystemClock.elapsedRealtime() - start) + " ms ("
+                            + failed.get() + " errores)");
+                    final List<Photo> result = new ArrayList<>(processed);
+                    mainHandler.post(() ->
+                            listener.onFinished(result, failed.get(), task.isCancelled()));
+                    return;
+                }
+
+                // Limitar los avisos de progreso para no saturar el hilo principal
+                long now = SystemClock.elapsedRealtime();
+                long last = lastProgressMs.get();
+                if (now - last >= PROGRESS_INTERVAL_MS && lastProgressMs.compareAndSet(last, now)) {
+                    mainHandler.post(() -> listener.onProgress(count, total));
+                }
+            });
+        }
+        // Los trabajos ya encolados terminan; después se liberan los hilos
+        pool.shutdown();
+        return task;
+    }
+
+    /**
+     * Intent para compartir las fotos con otra aplicación
+     */
+    public static Intent createShareIntent(List<Photo> photos) {
+        ArrayList<Uri> uris = toUris(photos);
+        Intent intent;
+        if (uris.size() == 1) {
+            intent = new Intent(Intent.ACTION_SEND);
+            intent.putExtra(Intent.EXTRA_STREAM, uris.get(0));
+        } else {
+            intent = new Intent(Intent.ACTION_SEND_MULTIPLE);
+            intent.putParcelableArrayListExtra(Intent.EXTRA_STREAM, uris);
+        }
+        // La galería lista cualquier imagen de MediaStore (PNG, HEIC, WebP...)
+        intent.setType("image/*");
+
+        // El permiso de lectura solo se concede a los URI del ClipData
+        ClipData clipData = ClipData.newRawUri(null, uris.get(0));
+        for (int i = 1; i < uris.size(); i++) {
+            clipData.addItem(new ClipData.Item(uris.get(i)));
+        }
+        intent.setClipData(clipData);
+        intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+
+        return Intent.createChooser(intent, "Compartir " + uris.size() + " fotos");
+    }
+
+    /**
+     * Reescribe el EXIF sin las etiquetas GPS. Las fotos que ya no tienen
+     * ubicación no se reescriben.
+     */
+    private static boolean removeLocation(ContentResolver resolver, Photo photo) {
+        try (ParcelFileDescriptor pfd = resolver.openFileDescriptor(photo.getUri(), "rw")) {
+            if (pfd == null) {
+                return false;
+            }
+            ExifInterface exif = new ExifInterface(pfd.getFileDescriptor());
+
+            boolean hasLocation = false;
+            for (String tag : LOCATION_TAGS) {
+                if (exif.getAttribute(tag) != null) {
+                    exif.setAttribute(tag, null);
+                    hasLocation = true;
+                }
+            }
+            if (hasLocation) {
+                exif.saveAttributes();
+            }
+            return true;
+        } catch (IOException | SecurityException | UnsupportedOperationException e) {
+            Log.w(TAG, "No se pudo quitar la ubicación de " + photo.getName(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Antes de Android 10 MediaStore guarda su propia copia de la ubicación;
+     * se borra en una sola transacción. En versiones posteriores el escáner
+     * la vuelve a leer del archivo al cerrarlo.
+     */
+    @SuppressWarnings("deprecation")
+    private static void updateMediaStoreLocation(ContentResolver resolver, List<Photo> photos) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q || photos.isEmpty()) {
+            return;
+        }
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        synchronized (photos) {
+            for (Photo photo : photos) {
+                operations.add(ContentProviderOperation.newUpdate(photo.getUri())
+                        .withValue(MediaStore.Images.ImageColumns.LATITUDE, null)
+                        .withValue(MediaStore.Images.ImageColumns.LONGITUDE, null)
+                        .build());
+            }
+        }
+        try {
+            applyInBatches(resolver, operations);
+        } catch (RemoteException | OperationApplicationException | SecurityException e) {
+            Log.w(TAG, "No se pudo actualizar la ubicación en MediaStore", e);
+        }
+    }
+
+    /**
+     * applyBatch en transacciones de BATCH_SIZE para no pasar el límite del
+     * Binder. Devuelve el total de filas afectadas.
+     */
+    private static int applyInBatches(ContentResolver resolver,
+                                      ArrayList<ContentProviderOperation> operations)
+            throws RemoteException, OperationApplicationException {
+        int affected = 0;
+        for (int from = 0; from < operations.size(); from += BATCH_SIZE) {
+            int to = Math.min(operations.size(), from + BATCH_SIZE);
+            ContentProviderResult[] results = resolver.applyBatch(MediaStore.AUTHORITY,
+                    new ArrayList<>(operations.subList(from, to)));
+            for (ContentProviderResult result : results) {
+                if (result.count != null) {
+                    affected += result.count;
+                }
+            }
+        }
+        return affected;
+    }
+
+    private static ArrayList<Uri> toUris(List<Photo> photos) {
+        ArrayList<Uri> uris = new ArrayList<>(photos.size());
+        for (Photo photo : photos) {
+            uris.add(photo.getUri());
+        }
+        return uris;
+    }
+}
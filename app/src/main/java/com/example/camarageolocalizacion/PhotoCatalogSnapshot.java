@@ -0,0 +1,143 @@
+package com.example.camarageolocalizacion;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Snapshot binario y versionado del catálogo de fotos.
+ *
+ * Permite pintar la galería al instante en el arranque, antes de que termine
+ * la consulta a MediaStore. El archivo se lee a través de un buffer mapeado
+ * en memoria y se escribe de forma atómica (archivo temporal + rename).
+ */
+public final class PhotoCatalogSnapshot {
+
+    /** "CGPS" en ASCII */
+    private static final int MAGIC = 0x43475053;
+    private static final int VERSION = 6;
+
+    // Bits del byte de estado de cada foto
+    private static final int FLAG_METADATA_LOADED = 1;
+    private static final int FLAG_PLACE_RESOLVED = 2;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private PhotoCatalogSnapshot() {
+    }
+
+    /**
+     * Lee el snapshot. Devuelve una lista vacía si no existe, si la versión
+     * no coincide o si el archivo está dañado.
+     */
+    public static List<Photo> read(File file) {
+        List<Photo> photos = new ArrayList<>();
+        if (!file.isFile() || file.length() < 12) {
+            return photos;
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return photos;
+            }
+
+            int count = buffer.getInt();
+            if (count < 0) {
+                return photos;
+            }
+
+            for (int i = 0; i < count; i++) {
+                long id = buffer.getLong();
+                byte flags = buffer.get();
+                double latitude = buffer.getDouble();
+                double longitude = buffer.getDouble();
+                long takenMillis = buffer.getLong();
+                String name = readString(buffer);
+                String dateTime = readString(buffer);
+                String placeName = readString(buffer);
+
+                Photo photo = new Photo(id, name);
+                photo.setLatitude(latitude);
+                photo.setLongitude(longitude);
+                photo.setDateTime(dateTime);
+                photo.setTakenMillis(takenMillis);
+                photo.setPlaceName(placeName);
+                photo.setMetadataLoaded((flags & FLAG_METADATA_LOADED) != 0);
+                photo.setPlaceResolved((flags & FLAG_PLACE_RESOLVED) != 0);
+                photos.add(photo);
+            }
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            // Snapshot corrupto: se descarta y se reconstruye desde MediaStore
+            photos.clear();
+        }
+
+        return photos;
+    }
+
+    /**
+     * Escribe el snapshot de forma atómica
+     */
+    public static void write(File file, List<Photo> photos) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(photos.size());
+
+            for (Photo photo : photos) {
+                out.writeLong(photo.getId());
+                out.writeByte((photo.isMetadataLoaded() ? FLAG_METADATA_LOADED : 0)
+                        | (photo.isPlaceResolved() ? FLAG_PLACE_RESOLVED : 0));
+                out.writeDouble(photo.getLatitude());
+                out.writeDouble(photo.getLongitude());
+                out.writeLong(photo.getTakenMillis());
+                writeString(out, photo.getName());
+                writeString(out, photo.getDateTime());
+                writeString(out, photo.getPlaceName());
+            }
+        }
+
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("No se pudo reemplazar " + file.getName());
+        }
+    }
+
+    private static String readString(MappedByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new IllegalArgumentException("Cadena fuera de rango");
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
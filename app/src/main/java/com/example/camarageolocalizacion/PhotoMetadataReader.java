@@ -0,0 +1,79 @@
+package com.example.camarageolocalizacion;
+
+import android.content.ContentResolver;
+
+import androidx.exifinterface.media.ExifInterface;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Lee en segundo plano los metadatos EXIF que la galería necesita
+ * (geolocalización y fecha) para fotos que todavía no se han mostrado
+ */
+public final class PhotoMetadataReader {
+
+    /**
+     * Metadatos de una foto. Se aplican a Photo desde el hilo principal.
+     */
+    public static final class Result {
+        public final long id;
+        public final double latitude;
+        public final double longitude;
+        public final String dateTime;
+        /** dateTime en milisegundos, -1 si no hay fecha válida */
+        public final long takenMillis;
+        /** false si el archivo ya no existe o no tenemos acceso */
+        public final boolean available;
+
+        Result(long id, double latitude, double longitude, String dateTime, boolean available) {
+            this.id = id;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.dateTime = dateTime;
+            this.takenMillis = TripEngine.parseExifDateTime(dateTime);
+            this.available = available;
+        }
+
+        public void applyTo(Photo photo) {
+            photo.setLatitude(latitude);
+            photo.setLongitude(longitude);
+            photo.setDateTime(dateTime);
+            photo.setTakenMillis(takenMillis);
+            photo.setMetadataLoaded(true);
+        }
+    }
+
+    private PhotoMetadataReader() {
+    }
+
+    /**
+     * Lee el EXIF de la foto. Devuelve null si no se pudo leer y un resultado
+     * no disponible si el archivo no existe; una foto sin GPS devuelve latitud
+     * y longitud 0.
+     */
+    public static Result read(ContentResolver resolver, Photo photo) {
+        try (InputStream inputStream = resolver.openInputStream(photo.getUri())) {
+            if (inputStream == null) {
+                return null;
+            }
+            ExifInterface exif = new ExifInterface(inputStream);
+
+            double[] latLong = exif.getLatLong();
+            String dateTime = exif.getAttribute(ExifInterface.TAG_DATETIME);
+            if (dateTime != null && dateTime.isEmpty()) {
+                dateTime = null;
+            }
+
+            return new Result(photo.getId(),
+                    latLong != null ? latLong[0] : 0.0,
+                    latLong != null ? latLong[1] : 0.0,
+                    dateTime, true);
+        } catch (FileNotFoundException | SecurityException e) {
+            return new Result(photo.getId(), 0.0, 0.0, null, false);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.camarageolocalizacion;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Bundle;
+import android.view.View;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import java.util.Locale;
+
+/**
+ * Visor a pantalla completa con los datos GPS y de fecha superpuestos
+ */
+public class PhotoViewerActivity extends AppCompatActivity {
+
+    private static final String EXTRA_URI = "extra_uri";
+    private static final String EXTRA_NAME = "extra_name";
+    private static final String EXTRA_LATITUDE = "extra_latitude";
+    private static final String EXTRA_LONGITUDE = "extra_longitude";
+    private static final String EXTRA_DATE_TIME = "extra_date_time";
+    private static final String EXTRA_PLACE_NAME = "extra_place_name";
+
+    private TiledImageView tiledImageView;
+
+    /**
+     * Crea el Intent para abrir una foto en el visor
+     */
+    public static Intent newIntent(Context context, Photo photo) {
+        Intent intent = new Intent(context, PhotoViewerActivity.class);
+        intent.putExtra(EXTRA_URI, photo.getUri());
+        intent.putExtra(EXTRA_NAME, photo.getName());
+        intent.putExtra(EXTRA_DATE_TIME, photo.getDateTime());
+        if (photo.hasGeoData()) {
+            intent.putExtra(EXTRA_LATITUDE, photo.getLatitude());
+            intent.putExtra(EXTRA_LONGITUDE, photo.getLongitude());
+            intent.putExtra(EXTRA_PLACE_NAME, photo.getPlaceName());
+        }
+        return intent;
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_photo_viewer);
+
+        tiledImageView = findViewById(R.id.tiledImageView);
+        TextView tvName = findViewById(R.id.tvViewerName);
+        TextView tvLocation = findViewById(R.id.tvViewerLocation);
+        TextView tvDateTime = findViewById(R.id.tvViewerDateTime);
+
+        Intent intent = getIntent();
+        Uri uri = intent.getParcelableExtra(EXTRA_URI);
+        if (uri == null) {
+            Toast.makeText(this, "❌ Archivo no disponible", Toast.LENGTH_SHORT).show();
+            finish();
+            return;
+        }
+
+        tvName.setText(intent.getStringExtra(EXTRA_NAME));
+
+        if (intent.hasExtra(EXTRA_LATITUDE)) {
+            String coordinates = String.format(Locale.getDefault(), "%.6f, %.6f",
+                    intent.getDoubleExtra(EXTRA_LATITUDE, 0),
+                    intent.getDoubleExtra(EXTRA_LONGITUDE, 0));
+            String placeName = intent.getStringExtra(EXTRA_PLACE_NAME);
+            tvLocation.setText(placeName != null
+                    ? "📍 " + placeName + " (" + coordinates + ")"
+                    : "📍 " + coordinates);
+            tvLocation.setVisibility(View.VISIBLE);
+        }
+
+        String dateTime = intent.getStringExtra(EXTRA_DATE_TIME);
+        if (dateTime != null && !dateTime.isEmpty()) {
+            tvDateTime.setText("📅 " + dateTime);
+            tvDateTime.setVisibility(View.VISIBLE);
+        }
+
+        tiledImageView.setImageUri(uri);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (tiledImageView != null) {
+            tiledImageView.release();
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package com.example.camarageolocalizacion;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Geocodificación inversa sin conexión.
+ *
+ * Convierte un gazetteer de texto estilo GeoNames en un índice binario con un
+ * k-d tree implícito sobre vectores unitarios (x, y, z), de modo que no hay
+ * problemas en el antimeridiano ni en los polos. El índice se lee mapeado en
+ * memoria y cada consulta visita del orden de log n nodos.
+ *
+ * Formatos de línea admitidos (separados por tabulador):
+ * <ul>
+ *     <li>GeoNames: id, nombre, ascii, alternativos, lat, lon, ..., país (col. 8)</li>
+ *     <li>Simple: nombre, lat, lon</li>
+ * </ul>
+ */
+public final class ReverseGeocoder {
+
+    /** "CGRG" en ASCII */
+    private static final int MAGIC = 0x43475247;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 12;
+    private static final int NODE_BYTES = 16;
+    private static final double EARTH_RADIUS_METERS = 6371008.8;
+
+    /** Más lejos que esto no se da nombre de lugar: mejor las coordenadas */
+    public static final double MAX_DISTANCE_METERS = 50_000;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int namesStart;
+
+    private ReverseGeocoder(ByteBuffer buffer, int count) {
+        this.buffer = buffer;
+        this.count = count;
+        this.namesStart = HEADER_BYTES + count * NODE_BYTES;
+    }
+
+    /**
+     * Abre un índice generado con {@link #buildIndex(File, File)}
+     */
+    public static ReverseGeocoder open(File index) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(index, "r");
+             FileChannel channel = raf.getChannel()) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (channel.size() < HEADER_BYTES
+                    || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Índice de gazetteer no válido: " + index.getName());
+            }
+            int count = buffer.getInt(8);
+            if (count <= 0 || HEADER_BYTES + (long) count * NODE_BYTES > channel.size()) {
+                throw new IOException("Índice de gazetteer truncado: " + index.getName());
+            }
+            return new ReverseGeocoder(buffer, count);
+        }
+    }
+
+    /**
+     * Lee el gazetteer de texto y escribe el índice binario de forma atómica
+     */
+    public static void buildIndex(File gazetteer, File index) throws IOException {
+        List<String> names = new ArrayList<>();
+        FloatList coords = new FloatList();
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(gazetteer), UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.charAt(0) == '#') {
+                    continue;
+                }
+                String[] fields = line.split("\t", -1);
+                String name;
+                double latitude;
+                double longitude;
+                try {
+                    if (fields.length >= 9) {
+                        name = fields[8].isEmpty() ? fields[1] : fields[1] + ", " + fields[8];
+                        latitude = Double.parseDouble(fields[4]);
+                        longitude = Double.parseDouble(fields[5]);
+                    } else if (fields.length == 3) {
+                        name = fields[0];
+                        latitude = Double.parseDouble(fields[1]);
+                        longitude = Double.parseDouble(fields[2]);
+                    } else {
+                        continue;
+                    }
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+
+                double latRad = Math.toRadians(latitude);
+                double lonRad = Math.toRadians(longitude);
+                coords.add((float) (Math.cos(latRad) * Math.cos(lonRad)));
+                coords.add((float) (Math.cos(latRad) * Math.sin(lonRad)));
+                coords.add((float) Math.sin(latRad));
+                names.add(name);
+            }
+        }
+
+        if (names.isEmpty()) {
+            throw new IOException("El gazetteer no contiene lugares: " + gazetteer.getName());
+        }
+
+        int n = names.size();
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        float[] xyz = coords.toArray();
+        buildTree(order, xyz, 0, n, 0);
+
+        // Nombres en el orden del árbol, cada uno con su longitud delante
+        ByteArrayOutputStream namesBlob = new ByteArrayOutputStream();
+        int[] nameOffsets = new int[n];
+        for (int i = 0; i < n; i++) {
+            byte[] bytes = names.get(order[i]).getBytes(UTF_8);
+            int length = Math.min(bytes.length, 0xFFFF);
+            nameOffsets[i] = namesBlob.size();
+            namesBlob.write(length >>> 8);
+            namesBlob.write(length & 0xFF);
+            namesBlob.write(bytes, 0, length);
+        }
+
+        File tmp = new File(index.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(n);
+            for (int i = 0; i < n; i++) {
+                int p = order[i] * 3;
+                out.writeFloat(xyz[p]);
+                out.writeFloat(xyz[p + 1]);
+                out.writeFloat(xyz[p + 2]);
+                out.writeInt(nameOffsets[i]);
+            }
+            namesBlob.writeTo(out);
+        }
+
+        if (!tmp.renameTo(index)) {
+            tmp.delete();
+            throw new IOException("No se pudo reemplazar " + index.getName());
+        }
+    }
+
+    /**
+     * Ordena order[lo, hi) como k-d tree implícito: la raíz del rango queda
+     * en la posición media y cada nivel alterna el eje x, y, z
+     */
+    private static void buildTree(int[] order, float[] xyz, int lo, int hi, int axis) {
+        if (hi - lo <= 1) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        select(order, xyz, lo, hi - 1, mid, axis);
+        int next = (axis + 1) % 3;
+        buildTree(order, xyz, lo, mid, next);
+        buildTree(order, xyz, mid + 1, hi, next);
+    }
+
+    /**
+     * Quickselect: deja en k el elemento que le corresponde según el eje
+     */
+    private static void select(int[] order, float[] xyz, int left, int right, int k, int axis) {
+        while (right > left) {
+            float pivot = xyz[order[(left + right) >>> 1] * 3 + axis];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (xyz[order[i] * 3 + axis] < pivot) {
+                    i++;
+                }
+                while (xyz[order[j] * 3 + axis] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int tmp = order[i];
+                    order[i] = order[j];
+                    order[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Devuelve el nombre del lugar más cercano a las coordenadas, o null si
+     * no hay ninguno a menos de {@link #MAX_DISTANCE_METERS}
+     */
+    public String nearest(double latitude, double longitude) {
+        return nearest(latitude, longitude, MAX_DISTANCE_METERS);
+    }
+
+    /**
+     * Como {@link #nearest(double, double)} con otra distancia máxima
+     */
+    public String nearest(double latitude, double longitude, double maxMeters) {
+        double latRad = Math.toRadians(latitude);
+        double lonRad = Math.toRadians(longitude);
+        float x = (float) (Math.cos(latRad) * Math.cos(lonRad));
+        float y = (float) (Math.cos(latRad) * Math.sin(lonRad));
+        float z = (float) Math.sin(latRad);
+
+        // La distancia máxima como cuerda al cuadrado poda la búsqueda desde
+        // el principio
+        double chord = 2 * Math.sin(Math.min(Math.PI, maxMeters / EARTH_RADIUS_METERS) / 2);
+        Nearest best = new Nearest();
+        best.distance = (float) (chord * chord);
+        search(x, y, z, 0, count, 0, best);
+        return best.index >= 0 ? readName(best.index) : null;
+    }
+
+    private void search(float x, float y, float z, int lo, int hi, int axis, Nearest best) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        int pos = HEADER_BYTES + mid * NODE_BYTES;
+        float nx = buffer.getFloat(pos);
+        float ny = buffer.getFloat(pos + 4);
+        float nz = buffer.getFloat(pos + 8);
+
+        float dx = x - nx;
+        float dy = y - ny;
+        float dz = z - nz;
+        float distance = dx * dx + dy * dy + dz * dz;
+        if (distance < best.distance) {
+            best.distance = distance;
+            best.index = mid;
+        }
+
+        float diff = axis == 0 ? dx : axis == 1 ? dy : dz;
+        int next = (axis + 1) % 3;
+        if (diff < 0) {
+            search(x, y, z, lo, mid, next, best);
+            if (diff * diff < best.distance) {
+                search(x, y, z, mid + 1, hi, next, best);
+            }
+        } else {
+            search(x, y, z, mid + 1, hi, next, best);
+            if (diff * diff < best.distance) {
+                search(x, y, z, lo, mid, next, best);
+            }
+        }
+    }
+
+    private String readName(int node) {
+        int offset = namesStart + buffer.getInt(HEADER_BYTES + node * NODE_BYTES + 12);
+        int length = ((buffer.get(offset) & 0xFF) << 8) | (buffer.get(offset + 1) & 0xFF);
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(offset + 2 + i);
+        }
+        return new String(bytes, UTF_8);
+    }
+
+    private static final class Nearest {
+        float distance;
+        int index = -1;
+    }
+
+    /**
+     * Lista de floats sin autoboxing para la construcción del índice
+     */
+    private static final class FloatList {
+        private float[] data = new float[3 * 1024];
+        private int size;
+
+        void add(float value) {
+            if (size == data.length) {
+                float[] grown = new float[data.length * 2];
+                System.arraycopy(data, 0, grown, 0, size);
+                data = grown;
+            }
+            data[size++] = value;
+        }
+
+        float[] toArray() {
+            float[] result = new float[size];
+            System.arraycopy(data, 0, result, 0, size);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.camarageolocalizacion;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+import android.util.LruCache;
+import android.util.Size;
+import android.widget.ImageView;
+
+import androidx.annotation.NonNull;
+import androidx.exifinterface.media.ExifInterface;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Carga progresiva de miniaturas para la galería.
+ *
+ * Todo el trabajo de E/S se hace en segundo plano: primero se muestra la
+ * miniatura embebida en el EXIF (unos 160 px, sin decodificar la imagen
+ * principal) y después la imagen reducida al tamaño de la celda: en Android
+ * 10+ con la miniatura que mantiene MediaStore (ContentResolver.loadThumbnail)
+ * y en versiones anteriores decodificando el descriptor de archivo con
+ * inSampleSize. Las imágenes reducidas quedan en una LruCache, así que volver
+ * a enlazar una celda no repite la decodificación. Solo se usa desde el hilo
+ * principal.
+ */
+public class ThumbnailLoader {
+
+    private static final String TAG = "ThumbnailLoader";
+    private static final int DECODE_THREADS = 2;
+    private static final int STATS_LOG_INTERVAL = 50;
+
+    public interface ErrorCallback {
+        void onError();
+    }
+
+    private final ExecutorService decodeExecutor = Executors.newFixedThreadPool(DECODE_THREADS);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<ImageView, Future<?>> pending = new WeakHashMap<>();
+    private final ContentResolver resolver;
+    private final int targetSizePx;
+    private final LruCache<Uri, Bitmap> memoryCache;
+
+    // Estadísticas de qué etapa se sirvió
+    private final AtomicInteger embeddedServed = new AtomicInteger();
+    private final AtomicInteger embeddedMissing = new AtomicInteger();
+    private final AtomicInteger fullServed = new AtomicInteger();
+    private int cacheServed;
+
+    public ThumbnailLoader(ContentResolver resolver, int targetSizePx) {
+        this.resolver = resolver;
+        this.targetSizePx = targetSizePx;
+
+        // Un octavo del heap para las imágenes ya reducidas
+        int cacheSizeKb = (int) (Runtime.getRuntime().maxMemory() / 1024 / 8);
+        memoryCache = new LruCache<Uri, Bitmap>(cacheSizeKb) {
+            @Override
+            protected int sizeOf(@NonNull Uri key, @NonNull Bitmap bitmap) {
+                return Math.max(1, bitmap.getByteCount() / 1024);
+            }
+        };
+    }
+
+    /**
+     * Muestra la foto en el ImageView
+     */
+    public void load(final Uri uri, final ImageView imageView, final ErrorCallback errorCallback) {
+        if (uri.equals(imageView.getTag())) {
+            // La celda ya muestra esta foto o la está cargando
+            return;
+        }
+        cancel(imageView);
+        imageView.setTag(uri);
+
+        Bitmap cached = memoryCache.get(uri);
+        if (cached != null) {
+            imageView.setImageBitmap(cached);
+            cacheServed++;
+            return;
+        }
+        // No dejar a la vista la foto anterior de una celda reciclada
+        imageView.setImageBitmap(null);
+
+        Future<?> future = decodeExecutor.submit(() -> {
+            final Bitmap preview = readEmbeddedThumbnail(uri);
+            final boolean hasPreview = preview != null;
+            if (hasPreview) {
+                mainHandler.post(() -> {
+                    if (uri.equals(imageView.getTag())) {
+                        imageView.setImageBitmap(preview);
+                    }
+                });
+            }
+
+            final Bitmap bitmap = decodeSampled(uri);
+
+            mainHandler.post(() -> {
+                if (!uri.equals(imageView.getTag())) {
+                    // La celda ya muestra otra foto
+                    return;
+                }
+                pending.remove(imageView);
+
+                if (bitmap != null) {
+                    memoryCache.put(uri, bitmap);
+                    imageView.setImageBitmap(bitmap);
+                    if (fullServed.incrementAndGet() % STATS_LOG_INTERVAL == 0) {
+                        Log.i(TAG, getStats());
+                    }
+                } else {
+                    // Sin caché de errores: el próximo bind lo vuelve a intentar
+                    imageView.setTag(null);
+                    if (!hasPreview) {
+                        errorCallback.onError();
+                    }
+                }
+            });
+        });
+        pending.put(imageView, future);
+    }
+
+    /**
+     * Cancela la decodificación pendiente de una celda reciclada
+     */
+    public void cancel(ImageView imageView) {
+        Future<?> future = pending.remove(imageView);
+        if (future != null) {
+            future.cancel(true);
+        }
+        imageView.setTag(null);
+    }
+
+    public void shutdown() {
+        decodeExecutor.shutdownNow();
+        pending.clear();
+        memoryCache.evictAll();
+    }
+
+    public String getStats() {
+        return "Miniaturas: " + embeddedServed.get() + " desde EXIF, "
+                + embeddedMissing.get() + " sin miniatura EXIF, "
+                + fullServed.get() + " decodificadas, "
+                + cacheServed + " desde caché";
+    }
+
+    /**
+     * Miniatura embebida en el EXIF, o null si no tiene. Se decodifica con el
+     * flujo todavía abierto: con un FileInputStream ExifInterface solo guarda
+     * el descriptor y lee los bytes de la miniatura al pedirla.
+     */
+    private Bitmap readEmbeddedThumbnail(Uri uri) {
+        Bitmap thumbnail = null;
+        try (InputStream inputStream = resolver.openInputStream(uri)) {
+            if (inputStream != null) {
+                ExifInterface exif = new ExifInterface(inputStream);
+                if (exif.hasThumbnail()) {
+                    thumbnail = exif.getThumbnailBitmap();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Sin EXIF legible o miniatura dañada: se espera a la imagen completa
+        }
+
+        if (thumbnail != null) {
+            embeddedServed.incrementAndGet();
+        } else {
+            embeddedMissing.incrementAndGet();
+        }
+        return thumbnail;
+    }
+
+    /**
+     * Decodifica con el mayor inSampleSize que no baje del tamaño pedido
+     */
+    private Bitmap decodeSampled(Uri uri) {
+        if (Thread.currentThread().isInterrupted()) {
+            return null;
+        }
+
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                return resolver.loadThumbnail(uri, new Size(targetSizePx, targetSizePx), null);
+            }
+
+            try (ParcelFileDescriptor pfd = resolver.openFileDescriptor(uri, "r")) {
+                if (pfd == null) {
+                    return null;
+                }
+                // El descriptor conserva su posición, se puede leer dos veces
+                FileDescriptor fd = pfd.getFileDescriptor();
+
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inJustDecodeBounds = true;
+                BitmapFactory.decodeFileDescriptor(fd, null, options);
+                if (options.outWidth <= 0 || options.outHeight <= 0) {
+                    return null;
+                }
+
+                int sample = 1;
+                int shortSide = Math.min(options.outWidth, options.outHeight);
+                while (shortSide / (sample * 2) >= targetSizePx) {
+                    sample *= 2;
+                }
+
+                options.inJustDecodeBounds = false;
+                options.inSampleSize = sample;
+                return BitmapFactory.decodeFileDescriptor(fd, null, options);
+            }
+        } catch (IOException | SecurityException e) {
+            return null;
+        }
+    }
+}
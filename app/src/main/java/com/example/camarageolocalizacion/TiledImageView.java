@@ -0,0 +1,448 @@
+package com.example.camarageolocalizacion;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.util.LruCache;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Visor con zoom que decodifica solo los tiles visibles de la imagen.
+ *
+ * Siempre se pinta una vista previa de baja resolución de la imagen completa;
+ * encima se dibujan tiles de {@link #TILE_SIZE} px decodificados con
+ * BitmapRegionDecoder al inSampleSize del zoom actual. Los tiles se guardan en
+ * una LRU acotada por bytes y los que dejan de verse al desplazar se cancelan.
+ *
+ * BitmapRegionDecoder serializa sus decodificaciones con un lock interno, así
+ * que cada hilo de decodificación usa su propio decodificador, abierto sobre
+ * su propio descriptor de archivo.
+ */
+public class TiledImageView extends View {
+
+    private static final String TAG = "TiledImageView";
+
+    private static final int TILE_SIZE = 512;
+    private static final int PREVIEW_MAX_SIDE = 1024;
+    // Un decodificador por hilo: cada uno guarda su propio índice de la imagen
+    private static final int DECODE_THREADS = 2;
+    private static final float MAX_SCALE = 2f;
+
+    private final ExecutorService decodeExecutor = Executors.newFixedThreadPool(DECODE_THREADS);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<String, Future<?>> pendingTiles = new HashMap<>();
+    private final LruCache<String, Bitmap> tileCache;
+
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect srcRect = new Rect();
+    private final RectF dstRect = new RectF();
+
+    private final ScaleGestureDetector scaleDetector;
+    private final GestureDetector gestureDetector;
+
+    // Decodificadores libres; los hilos toman uno por tile y lo devuelven
+    private final BlockingQueue<BitmapRegionDecoder> idleDecoders = new LinkedBlockingQueue<>();
+    // Todos los abiertos y sus descriptores, para liberarlos. Solo en el hilo principal.
+    private final List<BitmapRegionDecoder> decoders = new ArrayList<>();
+    private final List<ParcelFileDescriptor> fileDescriptors = new ArrayList<>();
+
+    private Bitmap preview;
+    private int previewSample;
+    private int imageWidth;
+    private int imageHeight;
+
+    // Transformación imagen -> vista: x_vista = x_imagen * scale + offsetX
+    private float scale;
+    private float minScale;
+    private float offsetX;
+    private float offsetY;
+
+    private boolean released;
+
+    public TiledImageView(Context context) {
+        this(context, null);
+    }
+
+    public TiledImageView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+
+        // 1/8 de la memoria disponible, medido en KB
+        int cacheSizeKb = (int) (Runtime.getRuntime().maxMemory() / 1024 / 8);
+        tileCache = new LruCache<String, Bitmap>(cacheSizeKb) {
+            @Override
+            protected int sizeOf(@NonNull String key, @NonNull Bitmap bitmap) {
+                // Los tiles del borde pueden ocupar menos de 1 KB
+                return Math.max(1, bitmap.getByteCount() / 1024);
+            }
+        };
+
+        scaleDetector = new ScaleGestureDetector(context, new ScaleListener());
+        gestureDetector = new GestureDetector(context, new PanListener());
+    }
+
+    /**
+     * Abre la imagen en segundo plano y muestra su vista previa
+     */
+    public void setImageUri(final Uri uri) {
+        final ContentResolver resolver = getContext().getContentResolver();
+        decodeExecutor.execute(() -> {
+            ParcelFileDescriptor pfd = null;
+            try {
+                pfd = resolver.openFileDescriptor(uri, "r");
+                if (pfd == null) {
+                    return;
+                }
+                final ParcelFileDescriptor openedPfd = pfd;
+                final BitmapRegionDecoder regionDecoder = BitmapRegionDecoder.newInstance(
+                        pfd.getFileDescriptor(), false);
+                final int width = regionDecoder.getWidth();
+                final int height = regionDecoder.getHeight();
+
+                int sample = 1;
+                while (Math.max(width, height) / sample > PREVIEW_MAX_SIDE) {
+                    sample *= 2;
+                }
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inSampleSize = sample;
+                final Bitmap previewBitmap = regionDecoder.decodeRegion(
+                        new Rect(0, 0, width, height), options);
+                final int finalSample = sample;
+
+                mainHandler.post(() -> {
+                    if (released) {
+                        regionDecoder.recycle();
+                        closeQuietly(openedPfd);
+                        return;
+                    }
+                    imageWidth = width;
+                    imageHeight = height;
+                    preview = previewBitmap;
+                    previewSample = finalSample;
+                    addDecoder(regionDecoder, openedPfd);
+                    resetScale();
+                    invalidate();
+                });
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "No se pudo abrir " + uri, e);
+                closeQuietly(pfd);
+                return;
+            }
+
+            // Con la vista previa ya en pantalla, un decodificador más por hilo
+            for (int i = 1; i < DECODE_THREADS && !Thread.currentThread().isInterrupted(); i++) {
+                ParcelFileDescriptor extraPfd = null;
+                try {
+                    extraPfd = resolver.openFileDescriptor(uri, "r");
+                    if (extraPfd == null) {
+                        return;
+                    }
+                    final ParcelFileDescriptor openedPfd = extraPfd;
+                    final BitmapRegionDecoder extra = BitmapRegionDecoder.newInstance(
+                            extraPfd.getFileDescriptor(), false);
+                    mainHandler.post(() -> addDecoder(extra, openedPfd));
+                } catch (IOException | RuntimeException e) {
+                    // Se sigue con los que ya hay
+                    Log.w(TAG, "No se pudo abrir otro decodificador para " + uri, e);
+                    closeQuietly(extraPfd);
+                    return;
+                }
+            }
+        });
+    }
+
+    /**
+     * Pone un decodificador a disposición de los hilos, o lo cierra si la
+     * vista ya se liberó. Solo desde el hilo principal.
+     */
+    private void addDecoder(BitmapRegionDecoder regionDecoder, ParcelFileDescriptor pfd) {
+        if (released) {
+            regionDecoder.recycle();
+            closeQuietly(pfd);
+            return;
+        }
+        decoders.add(regionDecoder);
+        fileDescriptors.add(pfd);
+        idleDecoders.offer(regionDecoder);
+    }
+
+    /**
+     * Libera el decodificador, los tiles y los hilos. Llamar desde onDestroy.
+     */
+    public void release() {
+        released = true;
+        decodeExecutor.shutdownNow();
+        pendingTiles.clear();
+        tileCache.evictAll();
+        idleDecoders.clear();
+        for (BitmapRegionDecoder regionDecoder : decoders) {
+            regionDecoder.recycle();
+        }
+        decoders.clear();
+        for (ParcelFileDescriptor pfd : fileDescriptors) {
+            closeQuietly(pfd);
+        }
+        fileDescriptors.clear();
+    }
+
+    private static void closeQuietly(ParcelFileDescriptor pfd) {
+        if (pfd == null) {
+            return;
+        }
+        try {
+            pfd.close();
+        } catch (IOException e) {
+            // Nada que hacer
+        }
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        if (imageWidth > 0) {
+            resetScale();
+        }
+    }
+
+    private void resetScale() {
+        if (getWidth() == 0 || getHeight() == 0) {
+            return;
+        }
+        minScale = Math.min((float) getWidth() / imageWidth, (float) getHeight() / imageHeight);
+        scale = minScale;
+        offsetX = (getWidth() - imageWidth * scale) / 2f;
+        offsetY = (getHeight() - imageHeight * scale) / 2f;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (preview == null || scale == 0f) {
+            return;
+        }
+
+        // Vista previa de toda la imagen como fondo
+        srcRect.set(0, 0, preview.getWidth(), preview.getHeight());
+        dstRect.set(offsetX, offsetY, offsetX + imageWidth * scale, offsetY + imageHeight * scale);
+        canvas.drawBitmap(preview, srcRect, dstRect, paint);
+
+        int sample = sampleSizeForScale(scale);
+        if (sample >= previewSample || decoders.isEmpty()) {
+            cancelTilesExcept(new HashSet<String>());
+            return;
+        }
+
+        // Área de la imagen visible en pantalla
+        int left = Math.max(0, (int) ((0 - offsetX) / scale));
+        int top = Math.max(0, (int) ((0 - offsetY) / scale));
+        int right = Math.min(imageWidth, (int) Math.ceil((getWidth() - offsetX) / scale));
+        int bottom = Math.min(imageHeight, (int) Math.ceil((getHeight() - offsetY) / scale));
+
+        int tileImageSize = TILE_SIZE * sample;
+        Set<String> visible = new HashSet<>();
+
+        for (int row = top / tileImageSize; row * tileImageSize < bottom; row++) {
+            for (int col = left / tileImageSize; col * tileImageSize < right; col++) {
+                String key = sample + ":" + col + ":" + row;
+                visible.add(key);
+
+                Bitmap tile = tileCache.get(key);
+                if (tile == null) {
+                    requestTile(key, sample, col, row);
+                    continue;
+                }
+
+                int tileLeft = col * tileImageSize;
+                int tileTop = row * tileImageSize;
+                int tileRight = Math.min(imageWidth, tileLeft + tileImageSize);
+                int tileBottom = Math.min(imageHeight, tileTop + tileImageSize);
+
+                srcRect.set(0, 0, tile.getWidth(), tile.getHeight());
+                dstRect.set(offsetX + tileLeft * scale, offsetY + tileTop * scale,
+                        offsetX + tileRight * scale, offsetY + tileBottom * scale);
+                canvas.drawBitmap(tile, srcRect, dstRect, paint);
+            }
+        }
+
+        cancelTilesExcept(visible);
+    }
+
+    /**
+     * Mayor potencia de 2 que no pierde resolución a la escala indicada
+     */
+    private static int sampleSizeForScale(float scale) {
+        int sample = 1;
+        while (sample * 2 * scale <= 1f) {
+            sample *= 2;
+        }
+        return sample;
+    }
+
+    private void requestTile(final String key, final int sample, int col, int row) {
+        if (pendingTiles.containsKey(key) || decodeExecutor.isShutdown()) {
+            return;
+        }
+
+        int tileImageSize = TILE_SIZE * sample;
+        final Rect region = new Rect(col * tileImageSize, row * tileImageSize,
+                Math.min(imageWidth, (col + 1) * tileImageSize),
+                Math.min(imageHeight, (row + 1) * tileImageSize));
+        // El propio future, para no borrar del mapa una petición más nueva de
+        // la misma clave si esta se canceló y se volvió a pedir
+        final Future<?>[] self = new Future<?>[1];
+
+        Future<?> future = decodeExecutor.submit(() -> {
+            BitmapRegionDecoder regionDecoder;
+            try {
+                regionDecoder = idleDecoders.take();
+            } catch (InterruptedException e) {
+                // Cancelado mientras esperaba decodificador
+                return;
+            }
+            final Bitmap tile;
+            try {
+                if (Thread.currentThread().isInterrupted() || regionDecoder.isRecycled()) {
+                    return;
+                }
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inSampleSize = sample;
+                tile = regionDecoder.decodeRegion(region, options);
+            } finally {
+                idleDecoders.offer(regionDecoder);
+            }
+
+            mainHandler.post(() -> {
+                pendingTiles.remove(key, self[0]);
+                if (released || tile == null) {
+                    return;
+                }
+                tileCache.put(key, tile);
+                invalidate();
+            });
+        });
+        self[0] = future;
+        pendingTiles.put(key, future);
+    }
+
+    /**
+     * Cancela los tiles en cola que ya no están en pantalla
+     */
+    private void cancelTilesExcept(Set<String> visible) {
+        Iterator<Map.Entry<String, Future<?>>> it = pendingTiles.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Future<?>> entry = it.next();
+            if (!visible.contains(entry.getKey())) {
+                entry.getValue().cancel(true);
+                it.remove();
+            }
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        boolean handled = scaleDetector.onTouchEvent(event);
+        handled = gestureDetector.onTouchEvent(event) || handled;
+        return handled || super.onTouchEvent(event);
+    }
+
+    private void zoomTo(float newScale, float focusX, float focusY) {
+        newScale = Math.max(minScale, Math.min(MAX_SCALE, newScale));
+        offsetX = focusX - (focusX - offsetX) * (newScale / scale);
+        offsetY = focusY - (focusY - offsetY) * (newScale / scale);
+        scale = newScale;
+        clampOffsets();
+        invalidate();
+    }
+
+    /**
+     * Evita que la imagen se salga de la vista; si es más pequeña, la centra
+     */
+    private void clampOffsets() {
+        float contentWidth = imageWidth * scale;
+        float contentHeight = imageHeight * scale;
+
+        if (contentWidth <= getWidth()) {
+            offsetX = (getWidth() - contentWidth) / 2f;
+        } else {
+            offsetX = Math.min(0f, Math.max(getWidth() - contentWidth, offsetX));
+        }
+
+        if (contentHeight <= getHeight()) {
+            offsetY = (getHeight() - contentHeight) / 2f;
+        } else {
+            offsetY = Math.min(0f, Math.max(getHeight() - contentHeight, offsetY));
+        }
+    }
+
+    private class ScaleListener extends ScaleGestureDetector.SimpleOnScaleGestureListener {
+        @Override
+        public boolean onScale(@NonNull ScaleGestureDetector detector) {
+            if (preview != null) {
+                zoomTo(scale * detector.getScaleFactor(), detector.getFocusX(), detector.getFocusY());
+            }
+            return true;
+        }
+    }
+
+    private class PanListener extends GestureDetector.SimpleOnGestureListener {
+        @Override
+        public boolean onDown(@NonNull MotionEvent e) {
+            return true;
+        }
+
+        @Override
+        public boolean onScroll(@Nullable MotionEvent e1, @NonNull MotionEvent e2,
+                                float distanceX, float distanceY) {
+            if (preview == null) {
+                return false;
+            }
+            offsetX -= distanceX;
+            offsetY -= distanceY;
+            clampOffsets();
+            invalidate();
+            return true;
+        }
+
+        @Override
+        public boolean onDoubleTap(@NonNull MotionEvent e) {
+            if (preview == null) {
+                return false;
+            }
+            // Alterna entre ajustar a pantalla y 1:1
+            float target = scale > minScale * 1.01f ? minScale : Math.max(minScale, 1f);
+            zoomTo(target, e.getX(), e.getY());
+            return true;
+        }
+    }
+}
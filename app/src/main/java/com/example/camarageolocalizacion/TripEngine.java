@@ -0,0 +1,328 @@
+package com.example.camarageolocalizacion;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reconstruye viajes a partir de fotos geolocalizadas ordenadas por fecha.
+ *
+ * Los puntos se reciben de uno en uno y en orden cronológico. Un salto de
+ * tiempo o de distancia mayor que el configurado cierra el viaje actual. Por
+ * cada tramo se calcula la distancia haversine y la velocidad, y la ruta se
+ * simplifica con Douglas-Peucker sobre una ventana de tamaño fijo, de modo que
+ * la memoria extra por viaje no depende del número de fotos.
+ */
+public class TripEngine {
+
+    private static final double EARTH_RADIUS_METERS = 6371008.8;
+    private static final int WINDOW_SIZE = 256;
+
+    /**
+     * Resumen de un viaje con su ruta simplificada
+     */
+    public static final class Trip {
+        private long startMillis;
+        private long endMillis;
+        private int photoCount;
+        private double distanceMeters;
+        private double maxSpeedMps;
+        // Ruta simplificada ya confirmada: lat, lon intercalados
+        private double[] route = new double[16];
+        private int routeLength;
+
+        public long getStartMillis() {
+            return startMillis;
+        }
+
+        public long getEndMillis() {
+            return endMillis;
+        }
+
+        public long getDurationMillis() {
+            return endMillis - startMillis;
+        }
+
+        public int getPhotoCount() {
+            return photoCount;
+        }
+
+        public double getDistanceMeters() {
+            return distanceMeters;
+        }
+
+        public double getMaxSpeedMps() {
+            return maxSpeedMps;
+        }
+
+        public double getAverageSpeedMps() {
+            long duration = getDurationMillis();
+            return duration > 0 ? distanceMeters / (duration / 1000.0) : 0;
+        }
+
+        /**
+         * Puntos de la ruta simplificada como {lat0, lon0, lat1, lon1, ...}
+         */
+        public double[] getRoute() {
+            double[] copy = new double[routeLength];
+            System.arraycopy(route, 0, copy, 0, routeLength);
+            return copy;
+        }
+
+        private void appendRoutePoint(double latitude, double longitude) {
+            if (routeLength + 2 > route.length) {
+                double[] grown = new double[route.length * 2];
+                System.arraycopy(route, 0, grown, 0, routeLength);
+                route = grown;
+            }
+            route[routeLength++] = latitude;
+            route[routeLength++] = longitude;
+        }
+    }
+
+    private final long maxGapMillis;
+    private final double maxGapMeters;
+    private final double toleranceMeters;
+
+    private final List<Trip> closedTrips = new ArrayList<>();
+    private Trip current;
+    private long lastMillis;
+    private double lastLatitude;
+    private double lastLongitude;
+
+    // Ventana de puntos pendientes de simplificar del viaje actual
+    private final double[] windowLat = new double[WINDOW_SIZE];
+    private final double[] windowLon = new double[WINDOW_SIZE];
+    private final boolean[] keep = new boolean[WINDOW_SIZE];
+    private final int[] stack = new int[2 * WINDOW_SIZE];
+    private int windowSize;
+
+    /**
+     * @param maxGapMillis    pausa máxima entre fotos del mismo viaje
+     * @param maxGapMeters    salto máximo entre fotos del mismo viaje
+     * @param toleranceMeters tolerancia de la simplificación de la ruta
+     */
+    public TripEngine(long maxGapMillis, double maxGapMeters, double toleranceMeters) {
+        this.maxGapMillis = maxGapMillis;
+        this.maxGapMeters = maxGapMeters;
+        this.toleranceMeters = toleranceMeters;
+    }
+
+    /**
+     * Añade una foto. Devuelve false si es anterior a la última recibida; en
+     * ese caso hay que reconstruir los viajes desde el principio.
+     */
+    public boolean add(long timeMillis, double latitude, double longitude) {
+        if (current != null && timeMillis < lastMillis) {
+            return false;
+        }
+
+        if (current != null) {
+            double meters = haversineMeters(lastLatitude, lastLongitude, latitude, longitude);
+            long elapsed = timeMillis - lastMillis;
+
+            if (elapsed > maxGapMillis || meters > maxGapMeters) {
+                closeCurrent();
+            } else {
+                current.distanceMeters += meters;
+                if (elapsed > 0) {
+                    current.maxSpeedMps = Math.max(current.maxSpeedMps, meters / (elapsed / 1000.0));
+                }
+                current.endMillis = timeMillis;
+                current.photoCount++;
+                appendToWindow(latitude, longitude);
+            }
+        }
+
+        if (current == null) {
+            current = new Trip();
+            current.startMillis = timeMillis;
+            current.endMillis = timeMillis;
+            current.photoCount = 1;
+            windowSize = 0;
+            appendToWindow(latitude, longitude);
+        }
+
+        lastMillis = timeMillis;
+        lastLatitude = latitude;
+        lastLongitude = longitude;
+        return true;
+    }
+
+    /**
+     * Viajes cerrados más el que está en curso, del más reciente al más antiguo
+     */
+    public List<Trip> getTrips() {
+        List<Trip> trips = new ArrayList<>(closedTrips);
+        if (current != null) {
+            trips.add(snapshotCurrent());
+        }
+        Collections.reverse(trips);
+        return trips;
+    }
+
+    public void clear() {
+        closedTrips.clear();
+        current = null;
+        windowSize = 0;
+    }
+
+    private void closeCurrent() {
+        flushWindow(true);
+        closedTrips.add(current);
+        current = null;
+    }
+
+    /**
+     * Copia del viaje en curso con la ventana pendiente ya simplificada,
+     * sin alterar el estado del motor
+     */
+    private Trip snapshotCurrent() {
+        Trip copy = new Trip();
+        copy.startMillis = current.startMillis;
+        copy.endMillis = current.endMillis;
+        copy.photoCount = current.photoCount;
+        copy.distanceMeters = current.distanceMeters;
+        copy.maxSpeedMps = current.maxSpeedMps;
+        for (int i = 0; i < current.routeLength; i += 2) {
+            copy.appendRoutePoint(current.route[i], current.route[i + 1]);
+        }
+        simplifyWindow();
+        for (int i = 0; i < windowSize; i++) {
+            if (keep[i]) {
+                copy.appendRoutePoint(windowLat[i], windowLon[i]);
+            }
+        }
+        return copy;
+    }
+
+    private void appendToWindow(double latitude, double longitude) {
+        if (windowSize == WINDOW_SIZE) {
+            flushWindow(false);
+        }
+        windowLat[windowSize] = latitude;
+        windowLon[windowSize] = longitude;
+        windowSize++;
+    }
+
+    /**
+     * Simplifica la ventana y pasa los puntos conservados a la ruta del viaje.
+     * Si el viaje sigue abierto, el último punto queda como inicio de la
+     * siguiente ventana para que los tramos enlacen.
+     */
+    private void flushWindow(boolean last) {
+        simplifyWindow();
+        int end = last ? windowSize : windowSize - 1;
+        for (int i = 0; i < end; i++) {
+            if (keep[i]) {
+                current.appendRoutePoint(windowLat[i], windowLon[i]);
+            }
+        }
+
+        if (last || windowSize == 0) {
+            windowSize = 0;
+        } else {
+            windowLat[0] = windowLat[windowSize - 1];
+            windowLon[0] = windowLon[windowSize - 1];
+            windowSize = 1;
+        }
+    }
+
+    /**
+     * Douglas-Peucker iterativo sobre la ventana; marca en keep los puntos
+     */
+    private void simplifyWindow() {
+        for (int i = 0; i < windowSize; i++) {
+            keep[i] = false;
+        }
+        if (windowSize == 0) {
+            return;
+        }
+        keep[0] = true;
+        keep[windowSize - 1] = true;
+
+        // Proyección equirectangular local para medir en metros
+        double cosLat = Math.cos(Math.toRadians(windowLat[0]));
+
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = windowSize - 1;
+        while (top > 0) {
+            int to = stack[--top];
+            int from = stack[--top];
+            if (to - from < 2) {
+                continue;
+            }
+
+            double ax = Math.toRadians(windowLon[from]) * cosLat * EARTH_RADIUS_METERS;
+            double ay = Math.toRadians(windowLat[from]) * EARTH_RADIUS_METERS;
+            double bx = Math.toRadians(windowLon[to]) * cosLat * EARTH_RADIUS_METERS;
+            double by = Math.toRadians(windowLat[to]) * EARTH_RADIUS_METERS;
+
+            double maxDistance = -1;
+            int index = -1;
+            for (int i = from + 1; i < to; i++) {
+                double px = Math.toRadians(windowLon[i]) * cosLat * EARTH_RADIUS_METERS;
+                double py = Math.toRadians(windowLat[i]) * EARTH_RADIUS_METERS;
+                double distance = segmentDistance(px, py, ax, ay, bx, by);
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    index = i;
+                }
+            }
+
+            if (maxDistance > toleranceMeters) {
+                keep[index] = true;
+                stack[top++] = from;
+                stack[top++] = index;
+                stack[top++] = index;
+                stack[top++] = to;
+            }
+        }
+    }
+
+    private static double segmentDistance(double px, double py,
+                                          double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0
+                : Math.max(0, Math.min(1, ((px - ax) * dx + (py - ay) * dy) / lengthSquared));
+        double cx = ax + t * dx - px;
+        double cy = ay + t * dy - py;
+        return Math.sqrt(cx * cx + cy * cy);
+    }
+
+    /**
+     * Distancia haversine en metros
+     */
+    public static double haversineMeters(double lat1, double lon1, double lat2, double lon2) {
+        double phi1 = Math.toRadians(lat1);
+        double phi2 = Math.toRadians(lat2);
+        double dPhi = phi2 - phi1;
+        double dLambda = Math.toRadians(lon2 - lon1);
+        double h = Math.sin(dPhi / 2) * Math.sin(dPhi / 2)
+                + Math.cos(phi1) * Math.cos(phi2) * Math.sin(dLambda / 2) * Math.sin(dLambda / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(h)));
+    }
+
+    /**
+     * Convierte TAG_DATETIME ("yyyy:MM:dd HH:mm:ss", hora local) a
+     * milisegundos. Devuelve -1 si no se puede interpretar.
+     */
+    public static long parseExifDateTime(String dateTime) {
+        if (dateTime == null) {
+            return -1;
+        }
+        SimpleDateFormat format = new SimpleDateFormat("yyyy:MM:dd HH:mm:ss", Locale.US);
+        format.setLenient(false);
+        try {
+            return format.parse(dateTime.trim()).getTime();
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.camarageolocalizacion;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Pruebas del índice de densidad del mapa de calor
+ */
+public class DensityGridTest {
+
+    @Test
+    public void countTile_todosLosTilesDeUnNivelSumanN() {
+        Random random = new Random(7);
+        int count = 20_000;
+        long[] codes = new long[count];
+        for (int i = 0; i < count; i++) {
+            codes[i] = DensityGrid.encode(random.nextDouble() * 170 - 85,
+                    random.nextDouble() * 360 - 180);
+        }
+        DensityGrid grid = new DensityGrid();
+        grid.setPoints(codes, Integer.MAX_VALUE);
+
+        int[] bins = new int[DensityGrid.BINS * DensityGrid.BINS];
+        for (int zoom : new int[]{0, 1, 4, 7}) {
+            int tiles = 1 << zoom;
+            long sum = 0;
+            for (int x = 0; x < tiles; x++) {
+                for (int y = 0; y < tiles; y++) {
+                    int total = grid.countTile(zoom, x, y, bins);
+                    int binSum = 0;
+                    for (int bin : bins) {
+                        binSum += bin;
+                    }
+                    assertEquals(total, binSum);
+                    sum += total;
+                }
+            }
+            assertEquals("zoom " + zoom, count, sum);
+        }
+    }
+
+    @Test
+    public void countTile_coincideConFuerzaBruta() {
+        Random random = new Random(11);
+        double[] latitudes = new double[2_000];
+        double[] longitudes = new double[latitudes.length];
+        long[] codes = new long[latitudes.length];
+        for (int i = 0; i < codes.length; i++) {
+            // Concentrados para que un tile de zoom alto tenga puntos
+            latitudes[i] = 19.5 + random.nextDouble() * 0.1;
+            longitudes[i] = -96.9 + random.nextDouble() * 0.1;
+            codes[i] = DensityGrid.encode(latitudes[i], longitudes[i]);
+        }
+        DensityGrid grid = new DensityGrid();
+        grid.setPoints(codes, Integer.MAX_VALUE);
+
+        int zoom = 10;
+        int tileX = tileX(longitudes[0], zoom);
+        int tileY = tileY(latitudes[0], zoom);
+        int expected = 0;
+        for (int i = 0; i < codes.length; i++) {
+            if (tileX(longitudes[i], zoom) == tileX && tileY(latitudes[i], zoom) == tileY) {
+                expected++;
+            }
+        }
+
+        int[] bins = new int[DensityGrid.BINS * DensityGrid.BINS];
+        assertEquals(expected, grid.countTile(zoom, tileX, tileY, bins));
+    }
+
+    @Test
+    public void setPoints_devuelveExactamenteLosTilesAfectados() {
+        double[][] kept = {{19.54, -96.91}, {40.41, -3.70}};
+        double[][] removed = {{19.17, -96.13}};
+        double[][] added = {{-33.86, 151.20}, {35.68, 139.69}};
+
+        DensityGrid grid = new DensityGrid();
+        grid.setPoints(encode(kept, removed), Integer.MAX_VALUE);
+        Set<Long> changed = grid.setPoints(encode(kept, added), Integer.MAX_VALUE);
+
+        Set<Long> expected = new HashSet<>();
+        for (double[] point : concat(removed, added)) {
+            for (int zoom = 0; zoom <= DensityGrid.MAX_ZOOM; zoom++) {
+                expected.add(DensityGrid.tileKey(zoom,
+                        tileX(point[1], zoom), tileY(point[0], zoom)));
+            }
+        }
+        assertEquals(expected, changed);
+        assertEquals(kept.length + added.length, grid.size());
+    }
+
+    @Test
+    public void setPoints_sinCambiosNoAfectaNingunTile() {
+        double[][] points = {{19.54, -96.91}, {40.41, -3.70}};
+        DensityGrid grid = new DensityGrid();
+        grid.setPoints(encode(points), Integer.MAX_VALUE);
+
+        Set<Long> changed = grid.setPoints(encode(points), 0);
+        assertNotNull(changed);
+        assertTrue(changed.isEmpty());
+    }
+
+    @Test
+    public void setPoints_devuelveNullAlPasarMaxChanges() {
+        long[] before = new long[10];
+        long[] after = new long[15];
+        for (int i = 0; i < after.length; i++) {
+            long code = DensityGrid.encode(i, i);
+            if (i < before.length) {
+                before[i] = code;
+            }
+            after[i] = code;
+        }
+
+        DensityGrid grid = new DensityGrid();
+        grid.setPoints(before, Integer.MAX_VALUE);
+        assertNull(grid.setPoints(after, 4));
+        // Aun así los puntos se sustituyen
+        assertEquals(15, grid.size());
+
+        grid.setPoints(before, Integer.MAX_VALUE);
+        assertNotNull(grid.setPoints(after, 5));
+    }
+
+    @Test
+    public void add_devuelveUnTilePorNivel() {
+        DensityGrid grid = new DensityGrid();
+        Set<Long> changed = grid.add(19.54, -96.91);
+
+        assertEquals(DensityGrid.MAX_ZOOM + 1, changed.size());
+        assertTrue(changed.contains(DensityGrid.tileKey(0, 0, 0)));
+        assertEquals(1, grid.size());
+        assertNull(new DensityGrid().getBounds());
+    }
+
+    private static int tileX(double longitude, int zoom) {
+        return (int) Math.floor((longitude + 180.0) / 360.0 * (1 << zoom));
+    }
+
+    private static int tileY(double latitude, int zoom) {
+        double sin = Math.sin(Math.toRadians(latitude));
+        double worldY = 0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI);
+        return (int) Math.floor(worldY * (1 << zoom));
+    }
+
+    private static long[] encode(double[][]... groups) {
+        double[][] points = concat(groups);
+        long[] codes = new long[points.length];
+        for (int i = 0; i < points.length; i++) {
+            codes[i] = DensityGrid.encode(points[i][0], points[i][1]);
+        }
+        return codes;
+    }
+
+    private static double[][] concat(double[][]... groups) {
+        double[][] all = new double[0][];
+        for (double[][] group : groups) {
+            int length = all.length;
+            all = Arrays.copyOf(all, length + group.length);
+            System.arraycopy(group, 0, all, length, group.length);
+        }
+        return all;
+    }
+}
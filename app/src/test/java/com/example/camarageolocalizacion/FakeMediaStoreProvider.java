@@ -0,0 +1,155 @@
+package com.example.camarageolocalizacion;
+
+import android.content.ContentProvider;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.provider.MediaStore;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.robolectric.Robolectric;
+
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * MediaStore de imágenes para Robolectric, respaldado por los archivos de
+ * {@link SyntheticPhotoLibrary}.
+ *
+ * Responde a las columnas que usa la app (_ID, DISPLAY_NAME, SIZE,
+ * DATE_ADDED, IS_PENDING), más DATA para comparar con la consulta anterior
+ * por rutas, y abre cada foto por su URI de contenido, de modo
+ * que MediaStorePhotoLoader, PhotoMetadataReader y PhotoAdapter se prueban
+ * sin cambios. La selección solo se interpreta en lo que la app usa: se
+ * descartan siempre las filas vacías o pendientes.
+ */
+public class FakeMediaStoreProvider extends ContentProvider {
+
+    private List<SyntheticPhotoLibrary.Entry> entries = new ArrayList<>();
+    private final Map<Long, SyntheticPhotoLibrary.Entry> entriesById = new HashMap<>();
+    private final AtomicInteger openCount = new AtomicInteger();
+
+    /**
+     * Registra el proveedor en la autoridad de MediaStore con las fotos dadas
+     */
+    public static FakeMediaStoreProvider register(List<SyntheticPhotoLibrary.Entry> entries) {
+        FakeMediaStoreProvider provider =
+                Robolectric.setupContentProvider(FakeMediaStoreProvider.class, MediaStore.AUTHORITY);
+        provider.setEntries(entries);
+        return provider;
+    }
+
+    public void setEntries(List<SyntheticPhotoLibrary.Entry> entries) {
+        // Ordenadas como las pide la app: DATE_ADDED descendente
+        List<SyntheticPhotoLibrary.Entry> sorted = new ArrayList<>(entries);
+        sorted.sort((a, b) -> Long.compare(b.dateAdded, a.dateAdded));
+        this.entries = sorted;
+
+        entriesById.clear();
+        for (SyntheticPhotoLibrary.Entry entry : entries) {
+            entriesById.put(entry.id, entry);
+        }
+    }
+
+    /**
+     * Veces que se ha abierto un archivo, para comprobar que las lecturas de
+     * la app llegan de verdad a este proveedor
+     */
+    public int getOpenCount() {
+        return openCount.get();
+    }
+
+    @Override
+    public boolean onCreate() {
+        return true;
+    }
+
+    @Nullable
+    @Override
+    public Cursor query(@NonNull Uri uri, @Nullable String[] projection, @Nullable String selection,
+                        @Nullable String[] selectionArgs, @Nullable String sortOrder) {
+        String[] columns = projection != null ? projection : new String[]{
+                MediaStore.Images.Media._ID,
+                MediaStore.Images.Media.DISPLAY_NAME,
+                MediaStore.Images.Media.SIZE,
+                MediaStore.Images.Media.DATE_ADDED,
+                MediaStore.Images.Media.IS_PENDING
+        };
+
+        MatrixCursor cursor = new MatrixCursor(columns, entries.size());
+        Object[] row = new Object[columns.length];
+        for (SyntheticPhotoLibrary.Entry entry : entries) {
+            if (entry.size == 0) {
+                continue;
+            }
+            for (int i = 0; i < columns.length; i++) {
+                row[i] = value(entry, columns[i]);
+            }
+            cursor.addRow(row);
+        }
+        return cursor;
+    }
+
+    private static Object value(SyntheticPhotoLibrary.Entry entry, String column) {
+        switch (column) {
+            case MediaStore.Images.Media._ID:
+                return entry.id;
+            case MediaStore.Images.Media.DISPLAY_NAME:
+                return entry.name;
+            case MediaStore.Images.Media.SIZE:
+                return entry.size;
+            case MediaStore.Images.Media.DATE_ADDED:
+                return entry.dateAdded;
+            case MediaStore.Images.Media.DATA:
+                return entry.file.getAbsolutePath();
+            case MediaStore.Images.Media.IS_PENDING:
+                return 0;
+            default:
+                return null;
+        }
+    }
+
+    @Nullable
+    @Override
+    public ParcelFileDescriptor openFile(@NonNull Uri uri, @NonNull String mode)
+            throws FileNotFoundException {
+        openCount.incrementAndGet();
+        SyntheticPhotoLibrary.Entry entry = entriesById.get(ContentUris.parseId(uri));
+        if (entry == null) {
+            throw new FileNotFoundException(uri.toString());
+        }
+        return ParcelFileDescriptor.open(entry.file, ParcelFileDescriptor.parseMode(mode));
+    }
+
+    @Nullable
+    @Override
+    public String getType(@NonNull Uri uri) {
+        return "image/jpeg";
+    }
+
+    @Nullable
+    @Override
+    public Uri insert(@NonNull Uri uri, @Nullable ContentValues values) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int delete(@NonNull Uri uri, @Nullable String selection, @Nullable String[] selectionArgs) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int update(@NonNull Uri uri, @Nullable ContentValues values, @Nullable String selection,
+                      @Nullable String[] selectionArgs) {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.camarageolocalizacion;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Pruebas del snapshot binario del catálogo
+ */
+public class PhotoCatalogSnapshotTest {
+
+    // Cabecera: magic, versión y número de fotos
+    private static final int HEADER_BYTES = 12;
+    // id, estado, latitud, longitud y takenMillis antes del nombre
+    private static final int NAME_LENGTH_OFFSET = HEADER_BYTES + 8 + 1 + 8 + 8 + 8;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void write_y_read_conservanTodosLosCampos() throws IOException {
+        Photo geotagged = new Photo(7, "IMG_0007.jpg");
+        geotagged.setLatitude(19.54);
+        geotagged.setLongitude(-96.91);
+        geotagged.setDateTime("2024:05:01 10:30:00");
+        geotagged.setTakenMillis(1_714_559_400_000L);
+        geotagged.setPlaceName("Xalapa-Enríquez");
+        geotagged.setPlaceResolved(true);
+        geotagged.setMetadataLoaded(true);
+
+        // Sin metadatos todavía: cadenas nulas y fecha -1
+        Photo pending = new Photo(Long.MAX_VALUE, "Café ☕.jpg");
+
+        // Lejos de todo lugar: buscado, pero sin nombre
+        Photo remote = new Photo(9, "IMG_0009.jpg");
+        remote.setLatitude(30.0);
+        remote.setLongitude(-40.0);
+        remote.setPlaceResolved(true);
+        remote.setMetadataLoaded(true);
+
+        File file = folder.newFile("catalog.bin");
+        PhotoCatalogSnapshot.write(file, Arrays.asList(geotagged, pending, remote));
+        List<Photo> photos = PhotoCatalogSnapshot.read(file);
+
+        assertEquals(3, photos.size());
+        Photo first = photos.get(0);
+        assertEquals(7, first.getId());
+        assertEquals("IMG_0007.jpg", first.getName());
+        assertEquals(19.54, first.getLatitude(), 0);
+        assertEquals(-96.91, first.getLongitude(), 0);
+        assertEquals("2024:05:01 10:30:00", first.getDateTime());
+        assertEquals(1_714_559_400_000L, first.getTakenMillis());
+        assertEquals("Xalapa-Enríquez", first.getPlaceName());
+        assertTrue(first.isPlaceResolved());
+        assertTrue(first.isMetadataLoaded());
+
+        Photo second = photos.get(1);
+        assertEquals(Long.MAX_VALUE, second.getId());
+        assertEquals("Café ☕.jpg", second.getName());
+        assertNull(second.getDateTime());
+        assertNull(second.getPlaceName());
+        assertEquals(-1, second.getTakenMillis());
+        assertFalse(second.isPlaceResolved());
+        assertFalse(second.isMetadataLoaded());
+
+        Photo third = photos.get(2);
+        assertNull(third.getPlaceName());
+        assertTrue(third.isPlaceResolved());
+        assertTrue(third.isMetadataLoaded());
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void write_y_read_catalogoVacio() throws IOException {
+        File file = folder.newFile("catalog.bin");
+        PhotoCatalogSnapshot.write(file, new ArrayList<Photo>());
+
+        assertEquals(HEADER_BYTES, file.length());
+        assertTrue(PhotoCatalogSnapshot.read(file).isEmpty());
+    }
+
+    @Test
+    public void read_archivoInexistenteDevuelveListaVacia() {
+        assertTrue(PhotoCatalogSnapshot.read(new File(folder.getRoot(), "no-existe.bin")).isEmpty());
+    }
+
+    @Test
+    public void read_versionDistintaDevuelveListaVacia() throws IOException {
+        File file = writeSample(3);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(4);
+            int version = raf.readInt();
+            raf.seek(4);
+            raf.writeInt(version - 1);
+        }
+
+        assertTrue(PhotoCatalogSnapshot.read(file).isEmpty());
+    }
+
+    @Test
+    public void read_archivoTruncadoDevuelveListaVacia() throws IOException {
+        File file = writeSample(3);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 5);
+        }
+
+        // Ni una lista a medias: todo o nada
+        assertTrue(PhotoCatalogSnapshot.read(file).isEmpty());
+    }
+
+    @Test
+    public void read_longitudDeCadenaFueraDeRangoDevuelveListaVacia() throws IOException {
+        File file = writeSample(3);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(NAME_LENGTH_OFFSET);
+            raf.writeInt(Integer.MAX_VALUE);
+        }
+
+        assertTrue(PhotoCatalogSnapshot.read(file).isEmpty());
+    }
+
+    @Test
+    public void read_numeroDeFotosExcesivoDevuelveListaVacia() throws IOException {
+        File file = writeSample(3);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(8);
+            raf.writeInt(Integer.MAX_VALUE);
+        }
+
+        assertTrue(PhotoCatalogSnapshot.read(file).isEmpty());
+    }
+
+    private File writeSample(int count) throws IOException {
+        List<Photo> photos = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            Photo photo = new Photo(i, "IMG_" + i + ".jpg");
+            photo.setLatitude(i);
+            photo.setLongitude(-i);
+            photo.setMetadataLoaded(true);
+            photos.add(photo);
+        }
+        File file = folder.newFile("catalog.bin");
+        PhotoCatalogSnapshot.write(file, photos);
+        assertEquals(count, PhotoCatalogSnapshot.read(file).size());
+        return file;
+    }
+}
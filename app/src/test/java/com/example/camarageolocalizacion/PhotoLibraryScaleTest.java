@@ -0,0 +1,341 @@
+package com.example.camarageolocalizacion;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.provider.MediaStore;
+import android.view.ContextThemeWrapper;
+import android.widget.FrameLayout;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Pruebas de escala de la galería con bibliotecas sintéticas.
+ *
+ * Cada prueba genera la biblioteca, la registra en MediaStore y mide la
+ * consulta del catálogo (la de MainActivity.loadPhotos), su reconciliación
+ * con el snapshot, la lectura de EXIF y el bind de PhotoAdapter. Si una
+ * medida supera su techo la prueba falla y con ella el build. Cada medida se
+ * imprime en la salida de la prueba. Con 20k fotos se compara además la
+ * consulta actual con la anterior por rutas.
+ *
+ * Generar la biblioteca de 100k fotos lleva unos segundos, pero ocupa unos
+ * 400 MB de disco y las medidas bajo Robolectric se alargan, así que solo se
+ * prueba con ./gradlew test -PfullScaleTests=true. El workflow scale-tests
+ * de CI la ejecuta cada noche y deja las medidas en el resumen del job.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PhotoLibraryScaleTest {
+
+    private static final String FULL_SCALE_PROPERTY = "fullScaleTests";
+
+    // Techos provisionales de la consulta, el EXIF y el bind bajo Robolectric:
+    // todavía no hay una medida de CI de referencia. Se fijarán con las líneas
+    // [escala] del workflow scale-tests más un margen.
+    private static final long LOAD_MS_1K = 500;
+    private static final long LOAD_MS_10K = 2_000;
+    private static final long LOAD_MS_100K = 10_000;
+    // Memoria retenida por foto del catálogo: Photo, su nombre y su hueco en la
+    // lista. Medido en JDK 17: 111-125 bytes por foto de 10k a 100k fotos. Por
+    // debajo de 10k el ruido del GC ronda el medio mega, de ahí la holgura fija
+    private static final long MAX_BYTES_PER_PHOTO = 256;
+    private static final long HEAP_NOISE_BYTES = 1024 * 1024;
+
+    // Lectura del snapshot, reconciliación y escritura del nuevo snapshot.
+    // Medido en una JVM ya caliente: 1,2-2,6 µs por foto de 1k a 100k fotos;
+    // el techo deja unas cuatro veces de margen y un mínimo para pausas de GC
+    private static final double SNAPSHOT_MS_PER_PHOTO = 0.01;
+    private static final long SNAPSHOT_MIN_MS = 20;
+
+    // Lectura de EXIF sobre una muestra repartida por toda la biblioteca
+    private static final int METADATA_SAMPLE = 5_000;
+    private static final double METADATA_MS_PER_PHOTO = 1.0;
+
+    // El bind no debe depender del tamaño de la biblioteca
+    private static final int BIND_SAMPLE = 200;
+    private static final double BIND_MS_PER_ITEM = 15;
+
+    // Comparación con la consulta anterior por rutas
+    private static final int COMPARISON_COUNT = 20_000;
+    private static final int COMPARISON_RUNS = 3;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void biblioteca_1k() throws IOException {
+        assertScale(1_000, LOAD_MS_1K);
+    }
+
+    @Test
+    public void biblioteca_10k() throws IOException {
+        assertScale(10_000, LOAD_MS_10K);
+    }
+
+    @Test
+    public void biblioteca_100k() throws IOException {
+        Assume.assumeTrue("Solo con -P" + FULL_SCALE_PROPERTY + "=true",
+                Boolean.getBoolean(FULL_SCALE_PROPERTY));
+        assertScale(100_000, LOAD_MS_100K);
+    }
+
+    @Test
+    public void consulta_20k_antesYDespuesDeQuitarData() throws IOException {
+        List<SyntheticPhotoLibrary.Entry> entries =
+                new SyntheticPhotoLibrary(folder.newFolder("fotos")).generate(COMPARISON_COUNT);
+        FakeMediaStoreProvider.register(entries);
+        ContentResolver resolver = ApplicationProvider.getApplicationContext().getContentResolver();
+
+        // Calienta las dos rutas antes de medir
+        assertEquals(COMPARISON_COUNT, queryWithPaths(resolver).size());
+        assertEquals(COMPARISON_COUNT, MediaStorePhotoLoader.query(resolver).size());
+
+        // Mejor de varias pasadas, alternando para repartir las pausas de GC
+        long beforeMs = Long.MAX_VALUE;
+        long afterMs = Long.MAX_VALUE;
+        for (int run = 0; run < COMPARISON_RUNS; run++) {
+            long start = System.nanoTime();
+            queryWithPaths(resolver);
+            beforeMs = Math.min(beforeMs, (System.nanoTime() - start) / 1_000_000);
+
+            start = System.nanoTime();
+            MediaStorePhotoLoader.query(resolver);
+            afterMs = Math.min(afterMs, (System.nanoTime() - start) / 1_000_000);
+        }
+
+        report("Consulta de %d fotos con DATA y File.exists(): %d ms; solo por columnas: %d ms",
+                COMPARISON_COUNT, beforeMs, afterMs);
+        assertTrue(String.format(Locale.US, "La consulta por columnas (%d ms) es más lenta que por rutas (%d ms)",
+                afterMs, beforeMs), afterMs <= beforeMs);
+    }
+
+    @Test
+    public void metadatos_gpsFechasYCabecerasDanadas() throws IOException {
+        List<SyntheticPhotoLibrary.Entry> entries = new SyntheticPhotoLibrary(folder.newFolder("fotos"))
+                .setGpsRatio(0.5)
+                .setDateRatio(0.5)
+                .setCorruptRatio(0.2)
+                .generate(500);
+        FakeMediaStoreProvider provider = FakeMediaStoreProvider.register(entries);
+        ContentResolver resolver = ApplicationProvider.getApplicationContext().getContentResolver();
+
+        Map<Long, SyntheticPhotoLibrary.Entry> byId = index(entries);
+        int corrupt = 0;
+        int geotagged = 0;
+        int reads = 0;
+        for (Photo photo : MediaStorePhotoLoader.query(resolver)) {
+            SyntheticPhotoLibrary.Entry entry = byId.get(photo.getId());
+            assertEquals(entry.name, photo.getName());
+
+            PhotoMetadataReader.Result result = PhotoMetadataReader.read(resolver, photo);
+            reads++;
+            // openInputStream tiene que llegar al proveedor y no a un flujo
+            // vacío de Robolectric
+            assertEquals(reads, provider.getOpenCount());
+            if (entry.corrupt) {
+                // No debe lanzar ni inventar una ubicación
+                assertTrue(result == null || (result.latitude == 0 && result.longitude == 0));
+                corrupt++;
+                continue;
+            }
+
+            assertNotNull(entry.name, result);
+            if (entry.hasGps()) {
+                assertEquals(entry.latitude, result.latitude, 1e-4);
+                assertEquals(entry.longitude, result.longitude, 1e-4);
+                geotagged++;
+            } else {
+                assertEquals(0.0, result.latitude, 0);
+                assertEquals(0.0, result.longitude, 0);
+            }
+            if (entry.dateTime != null) {
+                assertEquals(entry.dateTime, result.dateTime);
+            } else {
+                assertNull(result.dateTime);
+            }
+        }
+        assertTrue(corrupt > 0);
+        assertTrue(geotagged > 0);
+
+        // Una foto que MediaStore ya no tiene se marca como no disponible
+        PhotoMetadataReader.Result missing =
+                PhotoMetadataReader.read(resolver, new Photo(entries.size() + 1, "IMG_borrada.jpg"));
+        assertNotNull(missing);
+        assertFalse(missing.available);
+        assertEquals(reads + 1, provider.getOpenCount());
+    }
+
+    private void assertScale(int count, long maxLoadMs) throws IOException {
+        List<SyntheticPhotoLibrary.Entry> entries =
+                new SyntheticPhotoLibrary(folder.newFolder("fotos")).generate(count);
+        FakeMediaStoreProvider.register(entries);
+        Context context = ApplicationProvider.getApplicationContext();
+        ContentResolver resolver = context.getContentResolver();
+
+        // La primera consulta carga clases de Robolectric y del proveedor
+        MediaStorePhotoLoader.query(resolver);
+
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+        List<Photo> photos = MediaStorePhotoLoader.query(resolver);
+        long loadMs = (System.nanoTime() - start) / 1_000_000;
+        long retainedBytes = usedHeap() - heapBefore;
+
+        assertEquals(count, photos.size());
+        assertTrue(String.format(Locale.US, "Carga de %d fotos en %d ms (máximo %d)",
+                count, loadMs, maxLoadMs), loadMs <= maxLoadMs);
+        assertTrue(String.format(Locale.US, "%d bytes retenidos por foto (máximo %d)",
+                retainedBytes / count, MAX_BYTES_PER_PHOTO),
+                retainedBytes <= count * MAX_BYTES_PER_PHOTO + HEAP_NOISE_BYTES);
+        report("Consulta de %d fotos: %d ms, %d bytes por foto", count, loadMs, retainedBytes / count);
+
+        assertSnapshotTime(photos);
+        assertMetadataReadTime(resolver, photos);
+        assertBindTime(context, photos);
+    }
+
+    /**
+     * El resto del arranque de MainActivity: leer el snapshot anterior,
+     * reconciliarlo con la consulta y guardar el nuevo
+     */
+    private void assertSnapshotTime(List<Photo> photos) throws IOException {
+        File file = new File(folder.getRoot(), "catalog.bin");
+        // Deja el snapshot anterior y calienta las clases de lectura y escritura
+        PhotoCatalogSnapshot.write(file, photos);
+        PhotoCatalogSnapshot.read(file);
+
+        long start = System.nanoTime();
+        List<Photo> cached = PhotoCatalogSnapshot.read(file);
+        Map<Long, Photo> cachedById = new HashMap<>();
+        for (Photo photo : cached) {
+            cachedById.put(photo.getId(), photo);
+        }
+        MediaStorePhotoLoader.reconcile(photos, cachedById);
+        PhotoCatalogSnapshot.write(file, photos);
+        long snapshotMs = (System.nanoTime() - start) / 1_000_000;
+
+        long maxMs = Math.max(SNAPSHOT_MIN_MS, Math.round(photos.size() * SNAPSHOT_MS_PER_PHOTO));
+        assertEquals(photos.size(), cached.size());
+        assertTrue(String.format(Locale.US, "Snapshot y reconciliación de %d fotos en %d ms (máximo %d)",
+                photos.size(), snapshotMs, maxMs), snapshotMs <= maxMs);
+        report("Snapshot y reconciliación de %d fotos: %d ms", photos.size(), snapshotMs);
+    }
+
+    private static void assertMetadataReadTime(ContentResolver resolver, List<Photo> photos) {
+        int stride = Math.max(1, photos.size() / METADATA_SAMPLE);
+        int read = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < photos.size(); i += stride) {
+            PhotoMetadataReader.read(resolver, photos.get(i));
+            read++;
+        }
+        double msPerPhoto = (System.nanoTime() - start) / 1e6 / read;
+        assertTrue(String.format(Locale.US, "EXIF en %.3f ms por foto (máximo %.3f)",
+                msPerPhoto, METADATA_MS_PER_PHOTO), msPerPhoto <= METADATA_MS_PER_PHOTO);
+        report("EXIF de %d fotos: %.3f ms por foto", read, msPerPhoto);
+    }
+
+    private static void assertBindTime(Context context, List<Photo> photos) {
+        Context themed = new ContextThemeWrapper(context, R.style.Theme_CamaraGeolocalizacion);
+        FrameLayout parent = new FrameLayout(themed);
+        PhotoAdapter adapter = new PhotoAdapter(photos);
+        PhotoAdapter.PhotoViewHolder holder = adapter.onCreateViewHolder(parent, 0);
+
+        int stride = Math.max(1, photos.size() / BIND_SAMPLE);
+        int bound = 0;
+        long start = System.nanoTime();
+        for (int position = 0; position < photos.size() && bound < BIND_SAMPLE; position += stride) {
+            adapter.onBindViewHolder(holder, position);
+            bound++;
+        }
+        double msPerItem = (System.nanoTime() - start) / 1e6 / bound;
+        adapter.release();
+
+        assertTrue(String.format(Locale.US, "Bind en %.2f ms por tarjeta (máximo %.2f)",
+                msPerItem, BIND_MS_PER_ITEM), msPerItem <= BIND_MS_PER_ITEM);
+        report("Bind de %d tarjetas: %.2f ms por tarjeta", bound, msPerItem);
+    }
+
+    /**
+     * La consulta de MainActivity antes de MediaStorePhotoLoader: pide la
+     * columna DATA y comprueba cada archivo en el sistema de archivos
+     */
+    @SuppressWarnings("deprecation")
+    private static List<Photo> queryWithPaths(ContentResolver resolver) {
+        List<Photo> photos = new ArrayList<>();
+        String[] projection = new String[]{
+                MediaStore.Images.Media._ID,
+                MediaStore.Images.Media.DISPLAY_NAME,
+                MediaStore.Images.Media.DATA,
+                MediaStore.Images.Media.SIZE
+        };
+        try (Cursor cursor = resolver.query(MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
+                projection, null, null, MediaStore.Images.Media.DATE_ADDED + " DESC")) {
+            if (cursor != null) {
+                int idColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media._ID);
+                int dataColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.DATA);
+                int nameColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.DISPLAY_NAME);
+                int sizeColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.SIZE);
+
+                while (cursor.moveToNext()) {
+                    File file = new File(cursor.getString(dataColumn));
+                    if (file.exists() && file.canRead() && cursor.getLong(sizeColumn) > 0) {
+                        photos.add(new Photo(cursor.getLong(idColumn), cursor.getString(nameColumn)));
+                    }
+                }
+            }
+        }
+        return photos;
+    }
+
+    private static Map<Long, SyntheticPhotoLibrary.Entry> index(List<SyntheticPhotoLibrary.Entry> entries) {
+        Map<Long, SyntheticPhotoLibrary.Entry> byId = new HashMap<>();
+        for (SyntheticPhotoLibrary.Entry entry : entries) {
+            byId.put(entry.id, entry);
+        }
+        return byId;
+    }
+
+    private static void report(String format, Object... args) {
+        System.out.println("[escala] " + String.format(Locale.US, format, args));
+    }
+
+    /**
+     * Memoria en uso tras recolectar hasta que dos lecturas seguidas coinciden;
+     * tres System.gc() fijos daban deltas negativos en algunas ejecuciones
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long previous = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            long used = runtime.totalMemory() - runtime.freeMemory();
+            if (Math.abs(previous - used) < 64 * 1024) {
+                return used;
+            }
+            previous = used;
+        }
+        return previous;
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.camarageolocalizacion;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Pruebas de la geocodificación inversa sin conexión
+ */
+public class ReverseGeocoderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ReverseGeocoder buildGeocoder(String content) throws IOException {
+        File gazetteer = folder.newFile("gazetteer.txt");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(gazetteer), "UTF-8")) {
+            writer.write(content);
+        }
+        File index = new File(folder.getRoot(), "gazetteer.idx");
+        ReverseGeocoder.buildIndex(gazetteer, index);
+        return ReverseGeocoder.open(index);
+    }
+
+    @Test
+    public void nearest_devuelveLugarMasCercano() throws IOException {
+        ReverseGeocoder geocoder = buildGeocoder(
+                "Xalapa\t19.5438\t-96.9102\n"
+                        + "Veracruz\t19.1738\t-96.1342\n"
+                        + "Ciudad de México\t19.4326\t-99.1332\n"
+                        + "Madrid\t40.4168\t-3.7038\n");
+
+        assertEquals(4, geocoder.size());
+        assertEquals("Xalapa", geocoder.nearest(19.53, -96.92));
+        assertEquals("Veracruz", geocoder.nearest(19.20, -96.15));
+        assertEquals("Ciudad de México", geocoder.nearest(19.40, -99.10));
+        assertEquals("Madrid", geocoder.nearest(40.3, -3.8));
+    }
+
+    @Test
+    public void nearest_devuelveNullLejosDeTodoLugar() throws IOException {
+        ReverseGeocoder geocoder = buildGeocoder(
+                "Xalapa\t19.5438\t-96.9102\n"
+                        + "Madrid\t40.4168\t-3.7038\n");
+
+        // En medio del Atlántico
+        assertNull(geocoder.nearest(30.0, -40.0));
+        // Madrid está a unos 52 km de este punto
+        assertNull(geocoder.nearest(40.0, -4.0));
+        assertEquals("Madrid", geocoder.nearest(40.0, -4.0, 60_000));
+    }
+
+    @Test
+    public void nearest_coincideConFuerzaBruta() throws IOException {
+        Random random = new Random(3);
+        int places = 5_000;
+        double[] latitudes = new double[places];
+        double[] longitudes = new double[places];
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < places; i++) {
+            latitudes[i] = Math.toDegrees(Math.asin(random.nextDouble() * 2 - 1));
+            longitudes[i] = random.nextDouble() * 360 - 180;
+            content.append('L').append(i).append('\t').append(latitudes[i])
+                    .append('\t').append(longitudes[i]).append('\n');
+        }
+        ReverseGeocoder geocoder = buildGeocoder(content.toString());
+
+        int named = 0;
+        for (int q = 0; q < 2_000; q++) {
+            double latitude;
+            double longitude;
+            if (q % 2 == 0) {
+                // Cerca de un lugar, para que casi siempre haya nombre
+                int near = random.nextInt(places);
+                latitude = Math.max(-90, Math.min(90, latitudes[near] + random.nextGaussian() * 0.2));
+                longitude = longitudes[near] + random.nextGaussian() * 0.2;
+            } else {
+                latitude = Math.toDegrees(Math.asin(random.nextDouble() * 2 - 1));
+                longitude = random.nextDouble() * 360 - 180;
+            }
+
+            double bestMeters = Double.MAX_VALUE;
+            for (int i = 0; i < places; i++) {
+                bestMeters = Math.min(bestMeters,
+                        distanceMeters(latitude, longitude, latitudes[i], longitudes[i]));
+            }
+
+            String name = geocoder.nearest(latitude, longitude);
+            // En el borde del radio la precisión de float puede decidir
+            if (Math.abs(bestMeters - ReverseGeocoder.MAX_DISTANCE_METERS) < 10) {
+                continue;
+            }
+            if (bestMeters > ReverseGeocoder.MAX_DISTANCE_METERS) {
+                assertNull(name);
+                continue;
+            }
+            assertNotNull(name);
+            int found = Integer.parseInt(name.substring(1));
+            // Empates a menos de un metro pueden resolverse a cualquiera de los dos
+            assertEquals(bestMeters,
+                    distanceMeters(latitude, longitude, latitudes[found], longitudes[found]), 1.0);
+            named++;
+        }
+        assertTrue(named > 500);
+    }
+
+    @Test
+    public void nearest_cruzaElAntimeridiano() throws IOException {
+        ReverseGeocoder geocoder = buildGeocoder(
+                "Este\t0.0\t179.9\n"
+                        + "Centro\t0.0\t170.0\n");
+
+        assertEquals("Este", geocoder.nearest(0.0, -179.9));
+    }
+
+    @Test
+    public void buildIndex_leeFormatoGeoNames() throws IOException {
+        ReverseGeocoder geocoder = buildGeocoder(
+                "3530597\tXalapa\tXalapa\t\t19.53124\t-96.91589\tP\tPPLA\tMX\t\t30\n"
+                        + "línea inválida\n"
+                        + "3520339\tCoatepec\tCoatepec\t\t19.45213\t-96.96143\tP\tPPL\tMX\t\t30\n");
+
+        assertEquals(2, geocoder.size());
+        assertEquals("Coatepec, MX", geocoder.nearest(19.45, -96.96));
+    }
+
+    @Test(expected = IOException.class)
+    public void buildIndex_gazetteerVacioFalla() throws IOException {
+        buildGeocoder("# sin lugares\n");
+    }
+
+    private static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        double phi1 = Math.toRadians(lat1);
+        double phi2 = Math.toRadians(lat2);
+        double dPhi = phi2 - phi1;
+        double dLambda = Math.toRadians(lon2 - lon1);
+        double h = Math.sin(dPhi / 2) * Math.sin(dPhi / 2)
+                + Math.cos(phi1) * Math.cos(phi2) * Math.sin(dLambda / 2) * Math.sin(dLambda / 2);
+        return 2 * 6371008.8 * Math.asin(Math.min(1, Math.sqrt(h)));
+    }
+}
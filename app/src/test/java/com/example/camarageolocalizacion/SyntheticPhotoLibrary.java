@@ -0,0 +1,282 @@
+package com.example.camarageolocalizacion;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Genera bibliotecas de fotos sintéticas para las pruebas de escala.
+ *
+ * Todas las fotos comparten un JPEG base de la resolución indicada y solo
+ * cambia el segmento EXIF (APP1) que se escribe delante, así que generar
+ * 100k archivos cuesta poco más que escribirlos. Con una misma semilla la
+ * biblioteca es siempre la misma.
+ */
+public class SyntheticPhotoLibrary {
+
+    /**
+     * Una foto generada y lo que debería leerse de ella
+     */
+    public static final class Entry {
+        public final long id;
+        public final String name;
+        public final File file;
+        /** Bytes del archivo, como MediaStore.Images.Media.SIZE */
+        public final long size;
+        /** Segundos desde epoch, como MediaStore.Images.Media.DATE_ADDED */
+        public final long dateAdded;
+        /** NaN si la foto no lleva GPS */
+        public final double latitude;
+        public final double longitude;
+        /** null si la foto no lleva fecha */
+        public final String dateTime;
+        /** Cabecera dañada: no se debe poder leer nada de ella */
+        public final boolean corrupt;
+
+        Entry(long id, String name, File file, long size, long dateAdded, double latitude,
+              double longitude, String dateTime, boolean corrupt) {
+            this.id = id;
+            this.name = name;
+            this.file = file;
+            this.size = size;
+            this.dateAdded = dateAdded;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.dateTime = dateTime;
+            this.corrupt = corrupt;
+        }
+
+        public boolean hasGps() {
+            return !Double.isNaN(latitude);
+        }
+    }
+
+    private static final long START_MILLIS = 1_577_836_800_000L; // 2020-01-01 UTC
+    private static final long SPAN_MILLIS = 5 * 365 * 24 * 3600 * 1000L;
+
+    private final File directory;
+    private int width = 160;
+    private int height = 120;
+    private double gpsRatio = 0.7;
+    private double dateRatio = 0.9;
+    private double corruptRatio = 0.02;
+    private long seed = 42;
+
+    public SyntheticPhotoLibrary(File directory) {
+        this.directory = directory;
+    }
+
+    public SyntheticPhotoLibrary setResolution(int width, int height) {
+        this.width = width;
+        this.height = height;
+        return this;
+    }
+
+    /** Fracción de fotos con coordenadas GPS */
+    public SyntheticPhotoLibrary setGpsRatio(double gpsRatio) {
+        this.gpsRatio = gpsRatio;
+        return this;
+    }
+
+    /** Fracción de fotos con TAG_DATETIME */
+    public SyntheticPhotoLibrary setDateRatio(double dateRatio) {
+        this.dateRatio = dateRatio;
+        return this;
+    }
+
+    /** Fracción de fotos con la cabecera dañada */
+    public SyntheticPhotoLibrary setCorruptRatio(double corruptRatio) {
+        this.corruptRatio = corruptRatio;
+        return this;
+    }
+
+    public SyntheticPhotoLibrary setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Escribe count fotos en el directorio, con ids de 1 a count
+     */
+    public List<Entry> generate(int count) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("No se pudo crear " + directory);
+        }
+        byte[] image = encodeBaseImage(width, height);
+        Random random = new Random(seed);
+        SimpleDateFormat exifFormat = new SimpleDateFormat("yyyy:MM:dd HH:mm:ss", Locale.US);
+        exifFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        List<Entry> entries = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            long takenMillis = START_MILLIS + (long) (random.nextDouble() * SPAN_MILLIS);
+            boolean hasGps = random.nextDouble() < gpsRatio;
+            boolean hasDate = random.nextDouble() < dateRatio;
+            boolean corrupt = random.nextDouble() < corruptRatio;
+
+            // Coordenadas con cinco decimales, como las de un GPS de teléfono
+            double latitude = hasGps ? Math.round((random.nextDouble() * 170 - 85) * 1e5) / 1e5 : Double.NaN;
+            double longitude = hasGps ? Math.round((random.nextDouble() * 360 - 180) * 1e5) / 1e5 : Double.NaN;
+            String dateTime = hasDate ? exifFormat.format(new Date(takenMillis)) : null;
+
+            String name = String.format(Locale.US, "IMG_%06d.jpg", i);
+            File file = new File(directory, name);
+            byte[] exif = buildExifSegment(latitude, longitude, dateTime);
+            try (OutputStream out = new FileOutputStream(file)) {
+                if (corrupt) {
+                    writeCorrupt(out, exif, image, random.nextInt(3));
+                } else {
+                    // SOI, EXIF y el resto del JPEG base sin su SOI
+                    out.write(image, 0, 2);
+                    out.write(exif);
+                    out.write(image, 2, image.length - 2);
+                }
+            }
+
+            entries.add(new Entry(i, name, file, file.length(), takenMillis / 1000,
+                    latitude, longitude, dateTime, corrupt));
+        }
+        return entries;
+    }
+
+    /**
+     * Tres formas de cabecera dañada: archivo truncado dentro del EXIF,
+     * longitud de APP1 que se sale del archivo, o algo que no es un JPEG
+     */
+    private static void writeCorrupt(OutputStream out, byte[] exif, byte[] image, int kind)
+            throws IOException {
+        switch (kind) {
+            case 0:
+                out.write(image, 0, 2);
+                out.write(exif, 0, Math.min(exif.length, 24));
+                break;
+            case 1:
+                byte[] broken = exif.clone();
+                broken[2] = (byte) 0xFF;
+                broken[3] = (byte) 0xF0;
+                out.write(image, 0, 2);
+                out.write(broken);
+                break;
+            default:
+                out.write("no es una imagen".getBytes(StandardCharsets.US_ASCII));
+                break;
+        }
+    }
+
+    private static byte[] encodeBaseImage(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, new Color(0x1E88E5), width, height,
+                new Color(0xFF7043)));
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (!ImageIO.write(image, "jpg", out)) {
+            throw new IOException("No hay codificador JPEG disponible");
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Segmento APP1 con IFD0 (DateTime y puntero GPS) y el IFD de GPS, en
+     * orden de bytes Motorola
+     */
+    static byte[] buildExifSegment(double latitude, double longitude, String dateTime) {
+        boolean hasGps = !Double.isNaN(latitude);
+        boolean hasDate = dateTime != null;
+        int ifd0Entries = (hasDate ? 1 : 0) + (hasGps ? 1 : 0);
+        int ifd0Size = 2 + 12 * ifd0Entries + 4;
+        int gpsIfdOffset = 8 + ifd0Size;
+        int gpsIfdSize = hasGps ? 2 + 12 * 5 + 4 : 0;
+        int dataOffset = gpsIfdOffset + gpsIfdSize;
+        int dateOffset = dataOffset;
+        int latitudeOffset = dateOffset + (hasDate ? 20 : 0);
+        int longitudeOffset = latitudeOffset + 24;
+        int tiffSize = hasGps ? longitudeOffset + 24 : latitudeOffset;
+
+        // Marca, longitud, "Exif\0\0" y la estructura TIFF
+        ByteBuffer buffer = ByteBuffer.allocate(4 + 6 + tiffSize);
+        buffer.putShort((short) 0xFFE1);
+        buffer.putShort((short) (2 + 6 + tiffSize));
+        buffer.put("Exif\0\0".getBytes(StandardCharsets.US_ASCII));
+
+        int tiffStart = buffer.position();
+        buffer.put((byte) 'M').put((byte) 'M').putShort((short) 0x002A).putInt(8);
+
+        // IFD0, con las entradas ordenadas por etiqueta
+        buffer.putShort((short) ifd0Entries);
+        if (hasDate) {
+            putEntry(buffer, 0x0132, 2, 20, dateOffset);
+        }
+        if (hasGps) {
+            putEntry(buffer, 0x8825, 4, 1, gpsIfdOffset);
+        }
+        buffer.putInt(0);
+
+        if (hasGps) {
+            buffer.putShort((short) 5);
+            // GPSVersionID 2.2.0.0 y las referencias caben en la propia entrada
+            buffer.putShort((short) 0x0000).putShort((short) 1).putInt(4)
+                    .put((byte) 2).put((byte) 2).put((byte) 0).put((byte) 0);
+            putInlineAscii(buffer, 0x0001, latitude >= 0 ? 'N' : 'S');
+            putEntry(buffer, 0x0002, 5, 3, latitudeOffset);
+            putInlineAscii(buffer, 0x0003, longitude >= 0 ? 'E' : 'W');
+            putEntry(buffer, 0x0004, 5, 3, longitudeOffset);
+            buffer.putInt(0);
+        }
+
+        if (hasDate) {
+            buffer.put(dateTime.getBytes(StandardCharsets.US_ASCII), 0, 19).put((byte) 0);
+        }
+        if (hasGps) {
+            putDegrees(buffer, Math.abs(latitude));
+            putDegrees(buffer, Math.abs(longitude));
+        }
+
+        if (buffer.position() - tiffStart != tiffSize) {
+            throw new IllegalStateException("Tamaño de EXIF inesperado");
+        }
+        return buffer.array();
+    }
+
+    private static void putEntry(ByteBuffer buffer, int tag, int type, int count, int value) {
+        buffer.putShort((short) tag).putShort((short) type).putInt(count).putInt(value);
+    }
+
+    private static void putInlineAscii(ByteBuffer buffer, int tag, char value) {
+        buffer.putShort((short) tag).putShort((short) 2).putInt(2)
+                .put((byte) value).put((byte) 0).put((byte) 0).put((byte) 0);
+    }
+
+    /**
+     * Grados, minutos y segundos como tres RATIONAL; los segundos en
+     * milésimas para no perder los cinco decimales
+     */
+    private static void putDegrees(ByteBuffer buffer, double value) {
+        long totalMillis = Math.round(value * 3_600_000);
+        long degrees = totalMillis / 3_600_000;
+        long minutes = totalMillis / 60_000 % 60;
+        long secondsMillis = totalMillis % 60_000;
+        buffer.putInt((int) degrees).putInt(1);
+        buffer.putInt((int) minutes).putInt(1);
+        buffer.putInt((int) secondsMillis).putInt(1000);
+    }
+}
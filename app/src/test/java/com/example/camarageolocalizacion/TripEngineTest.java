@@ -0,0 +1,100 @@
+package com.example.camarageolocalizacion;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Pruebas de la reconstrucción de viajes
+ */
+public class TripEngineTest {
+
+    private static final long MINUTE = 60 * 1000L;
+    private static final long HOUR = 60 * MINUTE;
+
+    @Test
+    public void add_separaViajesPorPausaYDistancia() {
+        TripEngine engine = new TripEngine(3 * HOUR, 50_000, 25);
+
+        engine.add(0, 19.5438, -96.9102);
+        engine.add(30 * MINUTE, 19.5500, -96.9200);
+        // Pausa larga
+        engine.add(6 * HOUR, 19.5500, -96.9200);
+        // Salto de más de 50 km
+        engine.add(6 * HOUR + MINUTE, 40.4168, -3.7038);
+
+        List<TripEngine.Trip> trips = engine.getTrips();
+        assertEquals(3, trips.size());
+        assertEquals(1, trips.get(0).getPhotoCount());
+        assertEquals(1, trips.get(1).getPhotoCount());
+        assertEquals(2, trips.get(2).getPhotoCount());
+        assertEquals(30 * MINUTE, trips.get(2).getDurationMillis());
+    }
+
+    @Test
+    public void add_calculaDistanciaYVelocidad() {
+        TripEngine engine = new TripEngine(3 * HOUR, 50_000, 25);
+
+        // Un grado de latitud son ~111,2 km; en dos tramos de media hora
+        engine.add(0, 0.0, 0.0);
+        engine.add(30 * MINUTE, 0.1, 0.0);
+        engine.add(60 * MINUTE, 0.3, 0.0);
+
+        TripEngine.Trip trip = engine.getTrips().get(0);
+        assertEquals(33_358, trip.getDistanceMeters(), 5);
+        assertEquals(33_358 / 3600.0, trip.getAverageSpeedMps(), 0.01);
+        assertEquals(22_239 / 1800.0, trip.getMaxSpeedMps(), 0.01);
+    }
+
+    @Test
+    public void getRoute_simplificaLineaRectaEntreVentanas() {
+        TripEngine engine = new TripEngine(3 * HOUR, 50_000, 25);
+        for (int i = 0; i < 1000; i++) {
+            engine.add(i * MINUTE, 19.0 + i * 1e-4, -96.0);
+        }
+
+        TripEngine.Trip trip = engine.getTrips().get(0);
+        assertEquals(1000, trip.getPhotoCount());
+        double[] route = trip.getRoute();
+        // Solo sobreviven los extremos de cada ventana
+        assertTrue(route.length / 2 <= 6);
+        assertEquals(19.0, route[0], 1e-9);
+        assertEquals(19.0 + 999 * 1e-4, route[route.length - 2], 1e-9);
+    }
+
+    @Test
+    public void getRoute_conservaLosGiros() {
+        TripEngine engine = new TripEngine(3 * HOUR, 50_000, 25);
+        engine.add(0, 0.0, 0.0);
+        engine.add(MINUTE, 0.005, 0.0);
+        engine.add(2 * MINUTE, 0.01, 0.0);
+        engine.add(3 * MINUTE, 0.01, 0.005);
+        engine.add(4 * MINUTE, 0.01, 0.01);
+
+        double[] route = engine.getTrips().get(0).getRoute();
+        assertEquals(6, route.length);
+        assertEquals(0.01, route[2], 1e-9);
+        assertEquals(0.0, route[3], 1e-9);
+    }
+
+    @Test
+    public void add_rechazaFotosFueraDeOrden() {
+        TripEngine engine = new TripEngine(3 * HOUR, 50_000, 25);
+        assertTrue(engine.add(HOUR, 0.0, 0.0));
+        assertFalse(engine.add(0, 0.0, 0.0));
+        assertEquals(1, engine.getTrips().get(0).getPhotoCount());
+    }
+
+    @Test
+    public void parseExifDateTime_formatoExif() {
+        assertTrue(TripEngine.parseExifDateTime("2024:05:01 10:30:00") > 0);
+        assertEquals(HOUR, TripEngine.parseExifDateTime("2024:05:01 11:30:00")
+                - TripEngine.parseExifDateTime("2024:05:01 10:30:00"));
+        assertEquals(-1, TripEngine.parseExifDateTime("2024-05-01"));
+        assertEquals(-1, TripEngine.parseExifDateTime(null));
+    }
+}